@@ -0,0 +1,61 @@
+package ar.meetus.tasky.benchmark;
+
+import ar.meetus.tasky.TaskyApplication;
+import ar.meetus.tasky.model.User;
+import ar.meetus.tasky.security.JwtUtil;
+import ar.meetus.tasky.security.TokenCache;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Method;
+
+// Shared fixtures so every benchmark measures the same configuration as application.properties
+final class BenchmarkSupport {
+
+    static final String SECRET = "mySecretKey123456789012345678901234567890";
+    static final long EXPIRATION = 86400000L;
+
+    private BenchmarkSupport() {}
+
+    static JwtUtil jwtUtil(TokenCache tokenCache) {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", EXPIRATION);
+        ReflectionTestUtils.setField(jwtUtil, "keyId", "default");
+        ReflectionTestUtils.setField(jwtUtil, "additionalKeys", new String[0]);
+        ReflectionTestUtils.setField(jwtUtil, "tokenCache", tokenCache);
+        try {
+            Method init = JwtUtil.class.getDeclaredMethod("init");
+            init.setAccessible(true);
+            init.invoke(jwtUtil);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+        return jwtUtil;
+    }
+
+    static User user(long id, String email) {
+        User user = new User("Bench User", email, "password");
+        user.setId(id);
+        return user;
+    }
+
+    // Full application on a random port with an in-memory H2, without SQL logging
+    static ConfigurableApplicationContext startApplication(String... properties) {
+        return new SpringApplicationBuilder(TaskyApplication.class)
+                .properties("server.port=0",
+                        "spring.jpa.show-sql=false",
+                        "logging.level.root=WARN",
+                        "spring.datasource.url=jdbc:h2:mem:bench-" + System.nanoTime())
+                .properties(properties)
+                .run();
+    }
+
+    static void authenticate(User user) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+}
@@ -0,0 +1,96 @@
+package ar.meetus.tasky.benchmark;
+
+import ar.meetus.tasky.model.User;
+import ar.meetus.tasky.repository.RevokedTokenRepository;
+import ar.meetus.tasky.security.JwtAuthenticationFilter;
+import ar.meetus.tasky.security.JwtUtil;
+import ar.meetus.tasky.security.TokenCache;
+import ar.meetus.tasky.security.TokenDenylist;
+import ar.meetus.tasky.service.UserDetailsServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+// doFilterInternal with a cached token, an uncached token and a malformed header.
+// The user lookup is an in-memory stub so only the filter's own cost is measured.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthenticationFilterBenchmark {
+
+    private JwtAuthenticationFilter filter;
+    private TokenCache tokenCache;
+    private MockHttpServletRequest validRequest;
+    private MockHttpServletRequest malformedRequest;
+
+    @Setup
+    public void setup() {
+        User user = BenchmarkSupport.user(1L, "bench@example.com");
+        tokenCache = new TokenCache(10_000, new SimpleMeterRegistry());
+        JwtUtil jwtUtil = BenchmarkSupport.jwtUtil(tokenCache);
+
+        UserDetailsServiceImpl userDetailsService = new UserDetailsServiceImpl() {
+            @Override
+            public UserDetails loadUserByUsername(String email) {
+                return user;
+            }
+        };
+
+        filter = new JwtAuthenticationFilter();
+        ReflectionTestUtils.setField(filter, "jwtUtil", jwtUtil);
+        ReflectionTestUtils.setField(filter, "tokenCache", tokenCache);
+        ReflectionTestUtils.setField(filter, "tokenDenylist",
+                new TokenDenylist(Mockito.mock(RevokedTokenRepository.class), 10_000));
+        ReflectionTestUtils.setField(filter, "userDetailsService", userDetailsService);
+        ReflectionTestUtils.setField(filter, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.invokeMethod(filter, "initMetrics");
+
+        validRequest = new MockHttpServletRequest("GET", "/tasks");
+        validRequest.addHeader("Authorization", "Bearer " + jwtUtil.generateToken(user));
+        malformedRequest = new MockHttpServletRequest("GET", "/tasks");
+        malformedRequest.addHeader("Authorization", "Bearer garbage");
+    }
+
+    @Benchmark
+    public MockFilterChain cachedToken() throws Exception {
+        return doFilter(validRequest);
+    }
+
+    @Benchmark
+    public MockFilterChain uncachedToken() throws Exception {
+        tokenCache.invalidateAll();
+        return doFilter(validRequest);
+    }
+
+    @Benchmark
+    public MockFilterChain malformedHeader() throws Exception {
+        return doFilter(malformedRequest);
+    }
+
+    private MockFilterChain doFilter(MockHttpServletRequest request) throws Exception {
+        SecurityContextHolder.clearContext();
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        return chain;
+    }
+}
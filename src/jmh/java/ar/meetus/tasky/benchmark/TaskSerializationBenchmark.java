@@ -0,0 +1,63 @@
+package ar.meetus.tasky.benchmark;
+
+import ar.meetus.tasky.dto.TaskResponse;
+import ar.meetus.tasky.model.Task;
+import ar.meetus.tasky.model.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskSerializationBenchmark {
+
+    @Param({"100", "10000"})
+    public int size;
+
+    private List<Task> tasks;
+    private List<TaskResponse> responses;
+    private ObjectWriter writer;
+
+    @Setup
+    public void setup() {
+        User user = BenchmarkSupport.user(1L, "bench@example.com");
+        tasks = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Task task = new Task("Task " + i, "Description of task number " + i, user);
+            task.setId((long) i);
+            task.setStatus(Task.TaskStatus.values()[i % Task.TaskStatus.values().length]);
+            tasks.add(task);
+        }
+        responses = mapResponses();
+        writer = new ObjectMapper().writerFor(TaskResponse[].class);
+    }
+
+    @Benchmark
+    public List<TaskResponse> mapResponses() {
+        return tasks.stream().map(TaskResponse::new).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public byte[] serializeList() throws Exception {
+        return writer.writeValueAsBytes(responses.toArray(new TaskResponse[0]));
+    }
+}
@@ -0,0 +1,123 @@
+package ar.meetus.tasky.benchmark;
+
+import ar.meetus.tasky.dto.TaskPage;
+import ar.meetus.tasky.dto.TaskRequest;
+import ar.meetus.tasky.dto.TaskResponse;
+import ar.meetus.tasky.model.Task;
+import ar.meetus.tasky.model.User;
+import ar.meetus.tasky.repository.TaskRepository;
+import ar.meetus.tasky.repository.UserRepository;
+import ar.meetus.tasky.service.TaskListCache;
+import ar.meetus.tasky.service.TaskService;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// TaskService against the in-memory H2 of a fully started application
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskServiceBenchmark {
+
+    @Param({"100", "10000"})
+    public int tasksPerUser;
+
+    private ConfigurableApplicationContext context;
+    private TaskService taskService;
+    private TaskListCache taskListCache;
+    private TaskRepository taskRepository;
+    private TransactionTemplate readWrite;
+    private User user;
+    private Long patchedTaskId;
+
+    @Setup
+    public void setup() {
+        context = BenchmarkSupport.startApplication();
+        taskService = context.getBean(TaskService.class);
+        taskListCache = context.getBean(TaskListCache.class);
+        taskRepository = context.getBean(TaskRepository.class);
+        readWrite = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        user = context.getBean(UserRepository.class).save(new User("Bench", "bench@example.com", "password"));
+        EntityManager entityManager = context.getBean(EntityManager.class);
+        readWrite.executeWithoutResult(status -> taskRepository.saveAll(IntStream.range(0, tasksPerUser)
+                .mapToObj(i -> new Task("Task " + i, "Description of task " + i, entityManager.getReference(User.class, user.getId())))
+                .collect(Collectors.toList())));
+        patchedTaskId = taskRepository.findResponsesAfter(user.getId(), 0L, Limit.of(1)).get(0).getId();
+    }
+
+    // The security context is thread-bound, set it on whichever thread runs the iteration
+    @Setup(Level.Iteration)
+    public void authenticate() {
+        BenchmarkSupport.authenticate(user);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearAuthentication() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    // Cache miss: the projected query on every call
+    @Benchmark
+    public List<TaskResponse> getAllTasks() {
+        taskListCache.invalidate(user.getId());
+        return taskService.getAllTasks();
+    }
+
+    @Benchmark
+    public List<TaskResponse> getAllTasksCached() {
+        return taskService.getAllTasks();
+    }
+
+    // Entity hydration plus TaskResponse(Task) copy, the read path getAllTasks used before projections
+    @Benchmark
+    public List<TaskResponse> getAllTasksViaEntities() {
+        return readWrite.execute(status -> taskRepository.findByUserId(user.getId()).stream()
+                .map(TaskResponse::new)
+                .collect(Collectors.toList()));
+    }
+
+    @Benchmark
+    public TaskPage getFirstPage() {
+        return taskService.getTaskPage(null, null, 50, false);
+    }
+
+    @Benchmark
+    public void patchTask() {
+        taskService.patchTask(patchedTaskId, new TaskRequest(null, null, Task.TaskStatus.IN_PROGRESS));
+    }
+
+    @Benchmark
+    public TaskResponse createTask() {
+        return taskService.createTask(new TaskRequest("Created", "Created by benchmark", null));
+    }
+}
@@ -0,0 +1,93 @@
+package ar.meetus.tasky.benchmark;
+
+import ar.meetus.tasky.dto.TaskRequest;
+import ar.meetus.tasky.dto.TaskResponse;
+import ar.meetus.tasky.model.Task;
+import ar.meetus.tasky.model.User;
+import ar.meetus.tasky.repository.UserRepository;
+import ar.meetus.tasky.store.TaskStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// JPA and in-memory task store engines holding the same data set, create and list latency per call.
+// The memory engine fsyncs its log on every acknowledged write, as configured by default
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class TaskStoreBenchmark {
+
+    private static final int USERS = 1000;
+
+    @Param({"jpa", "memory"})
+    public String engine;
+
+    @Param({"1000000"})
+    public int tasks;
+
+    private ConfigurableApplicationContext context;
+    private TaskStore taskStore;
+    private Path directory;
+    private long[] userIds;
+    private int nextUser;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("tasky-store-bench");
+        context = BenchmarkSupport.startApplication(
+                "tasks.store.engine=" + engine,
+                "tasks.store.memory.dir=" + directory);
+        taskStore = context.getBean(TaskStore.class);
+
+        List<User> users = context.getBean(UserRepository.class).saveAll(IntStream.range(0, USERS)
+                .mapToObj(i -> new User("Bench " + i, "bench-" + i + "@example.com", "password"))
+                .toList());
+        userIds = users.stream().mapToLong(User::getId).toArray();
+        int tasksPerUser = tasks / USERS;
+        for (long userId : userIds) {
+            taskStore.create(userId, IntStream.range(0, tasksPerUser)
+                    .mapToObj(i -> new TaskRequest("Task " + i, "Description of task " + i, Task.TaskStatus.OPEN))
+                    .toList());
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    // Spread over the users, like concurrent clients would be
+    @Benchmark
+    public TaskStore.TaskWrite create() {
+        long userId = userIds[nextUser++ % USERS];
+        return taskStore.create(userId, List.of(new TaskRequest("Created", "Created by benchmark", Task.TaskStatus.OPEN)));
+    }
+
+    // A user with tasks / 1000 tasks, without the TaskListCache in front
+    @Benchmark
+    public List<TaskResponse> list() {
+        return taskStore.findAll(userIds[nextUser++ % USERS]);
+    }
+}
@@ -0,0 +1,304 @@
+package ar.meetus.tasky.loadtest;
+
+import ar.meetus.tasky.TaskyApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Open-loop HTTP load generator: boots Tasky on a random port, registers synthetic users and sends a
+// weighted mix of auth and task requests at a fixed arrival rate, whether or not earlier ones completed.
+// Latency is measured from the scheduled send time, so a stalled server is not hidden by a stalled
+// client (coordinated omission). Settings are system properties, see the loadtest profile in pom.xml:
+//   ./mvnw -Ploadtest test-compile exec:exec -Dload.rate=500 -Dload.duration=60
+public class LoadTest {
+
+    enum Operation { LOGIN, CREATE, LIST, UPDATE, DELETE }
+
+    private static final String PASSWORD = "password123";
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final int users = Integer.getInteger("load.users", 50);
+    private final int tasksPerUser = Integer.getInteger("load.tasks-per-user", 20);
+    private final int rate = Integer.getInteger("load.rate", 200);
+    private final int warmupSeconds = Integer.getInteger("load.warmup", 10);
+    private final int durationSeconds = Integer.getInteger("load.duration", 30);
+    private final Map<Operation, Integer> mix = parseMix(System.getProperty("load.mix",
+            "login=5,create=20,list=50,update=15,delete=10"));
+    private final int totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+    private final boolean virtualThreads = Boolean.getBoolean("load.virtual-threads");
+    private final Path outputDir = Path.of(System.getProperty("load.output", "target/loadtest"));
+
+    private final Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    private final List<Session> sessions = new ArrayList<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger taskCounter = new AtomicInteger();
+
+    private HttpClient client;
+    private String baseUrl;
+
+    public static void main(String[] args) throws Exception {
+        new LoadTest().run();
+    }
+
+    private void run() throws Exception {
+        // Command line arguments, properties() only sets defaults that application.properties overrides
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(TaskyApplication.class)
+                .run("--server.port=0",
+                        "--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--logging.level.root=WARN",
+                        // Every synthetic user logs in from the same address
+                        "--rate-limit.enabled=" + Boolean.getBoolean("load.rate-limit"),
+                        "--spring.datasource.url=jdbc:h2:mem:loadtest");
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            client = HttpClient.newBuilder()
+                    .executor(executor)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+
+            System.out.printf("Registering %d users with %d tasks each%n", users, tasksPerUser);
+            setUp();
+
+            System.out.printf("Warm-up: %d req/s for %ds%n", rate, warmupSeconds);
+            drive(executor, warmupSeconds);
+            reset();
+
+            System.out.printf("Measuring: %d req/s for %ds, mix %s%n", rate, durationSeconds, mix);
+            long start = System.nanoTime();
+            long sent = drive(executor, durationSeconds);
+            // Wait for the stragglers so their latency is part of the histograms
+            while (inFlight.get() > 0 && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(durationSeconds + 60L)) {
+                Thread.sleep(10);
+            }
+            report(sent, (System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    private void setUp() throws Exception {
+        for (Operation operation : Operation.values()) {
+            histograms.put(operation, new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 3));
+            errors.put(operation, new LongAdder());
+        }
+        for (int i = 0; i < users; i++) {
+            String email = "load-" + i + "@example.com";
+            String body = objectMapper.writeValueAsString(Map.of("name", "Load " + i, "email", email, "password", PASSWORD));
+            HttpResponse<String> response = client.send(post("/auth/register", null, body), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Registration failed with " + response.statusCode() + ": " + response.body());
+            }
+            Session session = new Session(email, objectMapper.readTree(response.body()).get("accessToken").asText());
+            for (int t = 0; t < tasksPerUser; t++) {
+                session.taskIds.add(createTask(session));
+            }
+            sessions.add(session);
+        }
+    }
+
+    // Schedules one request every 1/rate seconds until the duration is over, returns the number sent
+    private long drive(ExecutorService executor, int seconds) {
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        long sent = 0;
+        for (long scheduled = start; scheduled < end; scheduled = start + sent * interval) {
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Operation operation = pickOperation();
+            Session session = sessions.get(ThreadLocalRandom.current().nextInt(sessions.size()));
+            long intendedStart = scheduled;
+            inFlight.incrementAndGet();
+            executor.execute(() -> {
+                try {
+                    if (!execute(operation, session)) {
+                        errors.get(operation).increment();
+                    }
+                } catch (Exception e) {
+                    errors.get(operation).increment();
+                } finally {
+                    histograms.get(operation).recordValue(
+                            Math.min(System.nanoTime() - intendedStart, HIGHEST_TRACKABLE_NANOS));
+                    inFlight.decrementAndGet();
+                }
+            });
+            sent++;
+        }
+        return sent;
+    }
+
+    private boolean execute(Operation operation, Session session) throws Exception {
+        switch (operation) {
+            case LOGIN -> {
+                String body = objectMapper.writeValueAsString(Map.of("email", session.email, "password", PASSWORD));
+                HttpResponse<String> response = client.send(post("/auth/login", null, body), HttpResponse.BodyHandlers.ofString());
+                if (!isSuccess(response)) {
+                    return false;
+                }
+                session.token = objectMapper.readTree(response.body()).get("accessToken").asText();
+                return true;
+            }
+            case CREATE -> {
+                session.taskIds.add(createTask(session));
+                return true;
+            }
+            case LIST -> {
+                return isSuccess(client.send(request("/tasks", session.token).GET().build(),
+                        HttpResponse.BodyHandlers.discarding()));
+            }
+            case UPDATE -> {
+                Long id = session.taskIds.peekLast();
+                if (id == null) {
+                    session.taskIds.add(createTask(session));
+                    return true;
+                }
+                String body = "{\"status\":\"" + (ThreadLocalRandom.current().nextBoolean() ? "IN_PROGRESS" : "DONE") + "\"}";
+                return isSuccess(client.send(request("/tasks/" + id, session.token)
+                                .header("Content-Type", "application/json")
+                                .method("PATCH", HttpRequest.BodyPublishers.ofString(body))
+                                .build(),
+                        HttpResponse.BodyHandlers.discarding()));
+            }
+            case DELETE -> {
+                Long id = session.taskIds.pollFirst();
+                if (id == null) {
+                    session.taskIds.add(createTask(session));
+                    return true;
+                }
+                return isSuccess(client.send(request("/tasks/" + id, session.token).DELETE().build(),
+                        HttpResponse.BodyHandlers.discarding()));
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation " + operation);
+    }
+
+    private long createTask(Session session) throws IOException, InterruptedException {
+        String body = "{\"title\":\"Load task " + taskCounter.incrementAndGet() + "\",\"description\":\"Generated by the load test\"}";
+        HttpResponse<String> response = client.send(post("/tasks", session.token, body), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 201) {
+            throw new IllegalStateException("Task creation failed with " + response.statusCode());
+        }
+        return objectMapper.readTree(response.body()).get("id").asLong();
+    }
+
+    private HttpRequest post(String path, String token, String body) {
+        return request(path, token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private HttpRequest.Builder request(String path, String token) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(30));
+        return token != null ? builder.header("Authorization", "Bearer " + token) : builder;
+    }
+
+    private Operation pickOperation() {
+        int pick = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            pick -= entry.getValue();
+            if (pick < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Empty operation mix");
+    }
+
+    private void reset() {
+        while (inFlight.get() > 0) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        histograms.values().forEach(Histogram::reset);
+        errors.values().forEach(LongAdder::reset);
+    }
+
+    private void report(long sent, double elapsedSeconds) throws IOException {
+        // A server that keeps up completes close to the target rate; elapsed time includes draining the stragglers
+        System.out.printf("%nTarget %d req/s, sent %d, completed at %.0f req/s over %.1fs%n%n",
+                rate, sent, sent / elapsedSeconds, elapsedSeconds);
+        System.out.printf("%-8s %9s %7s %9s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        Files.createDirectories(outputDir);
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = histograms.get(operation);
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            System.out.printf("%-8s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    operation.name().toLowerCase(), histogram.getTotalCount(), errors.get(operation).sum(),
+                    histogram.getTotalCount() / elapsedSeconds,
+                    millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue()));
+            // Full distributions in HdrHistogram's .hgrm format, in milliseconds, e.g. for the online plotter
+            try (PrintStream out = new PrintStream(outputDir.resolve(operation.name().toLowerCase() + ".hgrm").toFile())) {
+                histogram.outputPercentileDistribution(out, 1_000_000.0);
+            }
+        }
+        System.out.printf("%nPercentile distributions written to %s%n", outputDir.toAbsolutePath());
+    }
+
+    private static boolean isSuccess(HttpResponse<?> response) {
+        return response.statusCode() / 100 == 2;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static Map<Operation, Integer> parseMix(String spec) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.trim().split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("load.mix entries must be in the form operation=weight: " + entry);
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight > 0) {
+                weights.put(Operation.valueOf(parts[0].trim().toUpperCase()), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("load.mix has no operation with a positive weight");
+        }
+        return weights;
+    }
+
+    private static final class Session {
+        private final String email;
+        private final ConcurrentLinkedDeque<Long> taskIds = new ConcurrentLinkedDeque<>();
+        private volatile String token;
+
+        private Session(String email, String token) {
+            this.email = email;
+            this.token = token;
+        }
+    }
+}
@@ -1,21 +1,46 @@
 package ar.meetus.tasky.controller;
 
+import ar.meetus.tasky.dto.TaskBatchDeleteRequest;
+import ar.meetus.tasky.dto.TaskBatchPatchRequest;
+import ar.meetus.tasky.dto.TaskBatchRequest;
+import ar.meetus.tasky.dto.TaskChangesResponse;
+import ar.meetus.tasky.dto.TaskImportResponse;
+import ar.meetus.tasky.dto.TaskPage;
 import ar.meetus.tasky.dto.TaskRequest;
 import ar.meetus.tasky.dto.TaskResponse;
+import ar.meetus.tasky.model.Task;
 import ar.meetus.tasky.service.TaskService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 @RestController
 @RequestMapping("/tasks")
 public class TaskController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String TEXT_CSV_VALUE = "text/csv";
+
     @Autowired
     private TaskService taskService;
 
@@ -25,10 +50,102 @@ public class TaskController {
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<List<TaskResponse>> createTasks(@Valid @RequestBody TaskBatchRequest request) {
+        List<TaskResponse> response = taskService.createTasks(request.getTasks());
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @PatchMapping("/batch")
+    public ResponseEntity<List<TaskResponse>> patchTasks(
+            @Validated(TaskRequest.Patch.class) @RequestBody TaskBatchPatchRequest request) {
+        List<TaskResponse> response = taskService.patchTasks(request.getTasks());
+        return ResponseEntity.ok(response);
+    }
+
+    @DeleteMapping("/batch")
+    public ResponseEntity<Map<String, Object>> deleteTasks(@Valid @RequestBody TaskBatchDeleteRequest request) {
+        int deleted = taskService.deleteTasks(request.getIds());
+        return ResponseEntity.ok(Map.of("message", "Tasks deleted successfully", "deleted", deleted));
+    }
+
     @GetMapping
-    public ResponseEntity<List<TaskResponse>> getAllTasks() {
-        List<TaskResponse> tasks = taskService.getAllTasks();
-        return ResponseEntity.ok(tasks);
+    public ResponseEntity<List<TaskResponse>> getAllTasks(
+            @RequestParam(required = false) Task.TaskStatus status,
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String sort,
+            HttpServletRequest httpRequest,
+            HttpServletResponse httpResponse,
+            WebRequest webRequest) {
+        // Lists depend on the token: shared caches must not store them and private ones revalidate per account
+        httpResponse.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+        httpResponse.setHeader(HttpHeaders.VARY, HttpHeaders.AUTHORIZATION);
+        // The version is read before querying: a write committed meanwhile only makes the next poll refetch
+        String etag = taskService.getTaskListETag(httpRequest.getQueryString());
+        if (etag != null && webRequest.checkNotModified(etag)) {
+            // 304 Not Modified, neither the tasks table nor the serializer is touched
+            return null;
+        }
+
+        // Without any paging parameter the full list is returned, as before
+        if (status == null && cursor == null && limit == null && sort == null) {
+            List<TaskResponse> tasks = taskService.getAllTasks();
+            return withETag(ResponseEntity.ok(), etag).body(tasks);
+        }
+
+        TaskPage page = taskService.getTaskPage(status, cursor, limit, isDescending(sort));
+        ResponseEntity.BodyBuilder builder = withETag(ResponseEntity.ok(), etag);
+        if (page.getNextCursor() != null) {
+            builder.header(NEXT_CURSOR_HEADER, page.getNextCursor().toString());
+        }
+        return builder.body(page.getItems());
+    }
+
+    // Delta sync: what changed since the version returned by the previous call (0 for a first sync)
+    @GetMapping("/changes")
+    public ResponseEntity<TaskChangesResponse> getChanges(@RequestParam long since) {
+        return ResponseEntity.ok(taskService.getChangesSince(since));
+    }
+
+    // Bulk import, the body is parsed while it is being received instead of being bound up front.
+    // Gzip compressed bodies (Content-Encoding: gzip) are inflated on the fly
+    @PostMapping(path = "/import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, TEXT_CSV_VALUE})
+    public ResponseEntity<TaskImportResponse> importTasks(HttpServletRequest request) throws IOException {
+        MediaType contentType = MediaType.parseMediaType(request.getContentType());
+        Charset charset = contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+        InputStream body = request.getInputStream();
+        if ("gzip".equalsIgnoreCase(request.getHeader(HttpHeaders.CONTENT_ENCODING))) {
+            body = new GZIPInputStream(body, 8192);
+        }
+        boolean csv = contentType.isCompatibleWith(MediaType.parseMediaType(TEXT_CSV_VALUE));
+        return ResponseEntity.ok(taskService.importTasks(new InputStreamReader(body, charset), csv));
+    }
+
+    // Full export as NDJSON streamed while it is read, gzip compressed when the client accepts it.
+    // Headers are committed here, before the body is written on the async thread, so nothing else
+    // (like the security header writer) touches the response while the export streams
+    @GetMapping(path = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody exportTasks(
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletResponse response) throws IOException {
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+        StreamingResponseBody body = taskService.exportTasks(gzip);
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"tasks.ndjson\"");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.flushBuffer();
+        return body;
+    }
+
+    // Server-Sent Events: created, updated and deleted events for the user's tasks as they are committed
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges() {
+        return taskService.subscribeToChanges();
     }
 
     @PutMapping("/{id}")
@@ -37,9 +154,30 @@ public class TaskController {
         return ResponseEntity.ok(response);
     }
 
+    @PatchMapping("/{id}")
+    public ResponseEntity<Map<String, String>> patchTask(@PathVariable Long id,
+                                                         @Validated(TaskRequest.Patch.class) @RequestBody TaskRequest request) {
+        taskService.patchTask(id, request);
+        return ResponseEntity.ok(Map.of("message", "Task updated successfully"));
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Map<String, String>> deleteTask(@PathVariable Long id) {
         taskService.deleteTask(id);
         return ResponseEntity.ok(Map.of("message", "Task deleted successfully"));
     }
+
+    private static ResponseEntity.BodyBuilder withETag(ResponseEntity.BodyBuilder builder, String etag) {
+        return etag != null ? builder.eTag(etag) : builder;
+    }
+
+    private boolean isDescending(String sort) {
+        if (sort == null || sort.equalsIgnoreCase("asc")) {
+            return false;
+        }
+        if (sort.equalsIgnoreCase("desc")) {
+            return true;
+        }
+        throw new RuntimeException("Sort must be either asc or desc");
+    }
 }
\ No newline at end of file
@@ -0,0 +1,94 @@
+package ar.meetus.tasky.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+// Measures replica lag with a heartbeat row: every probe writes the current time to the primary and reads
+// the row back from the replica. A replica showing an older beat is behind by the time since the first
+// beat it is missing was written. The replica is only used while the lag stays within maxLagMillis.
+public class ReplicaLagMonitor {
+
+    static final String TABLE = "replica_heartbeat";
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final long maxLagMillis;
+
+    // Beats written within the last maxLagMillis plus the newest older one, oldest first
+    private final Deque<Long> beats = new ArrayDeque<>();
+
+    // -1 until the replica answered a probe, and after it failed one
+    private volatile long lagMillis = -1;
+
+    public ReplicaLagMonitor(DataSource primary, DataSource replica, long maxLagMillis, MeterRegistry meterRegistry) {
+        this.primary = new JdbcTemplate(primary);
+        this.replica = new JdbcTemplate(replica);
+        this.maxLagMillis = maxLagMillis;
+        this.primary.execute("create table if not exists " + TABLE + " (id int primary key, beat bigint not null)");
+
+        Gauge.builder("tasky.datasource.replica.lag", this, ReplicaLagMonitor::lagMillis)
+                .description("Replica lag measured by the last heartbeat probe in milliseconds, -1 while unavailable")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    public boolean isReplicaUsable() {
+        long lag = lagMillis;
+        return lag >= 0 && lag <= maxLagMillis;
+    }
+
+    public long lagMillis() {
+        return lagMillis;
+    }
+
+    @Scheduled(fixedDelayString = "${datasource.replica.probe-interval-ms:1000}")
+    public synchronized void probe() {
+        try {
+            writeBeat();
+            checkReplica();
+        } catch (RuntimeException e) {
+            lagMillis = -1;
+        }
+    }
+
+    synchronized void writeBeat() {
+        long now = System.currentTimeMillis();
+        // Strictly increasing even if the clock stands still or steps back
+        long beat = beats.isEmpty() ? now : Math.max(now, beats.peekLast() + 1);
+        if (primary.update("update " + TABLE + " set beat = ? where id = 1", beat) == 0) {
+            primary.update("insert into " + TABLE + " (id, beat) values (1, ?)", beat);
+        }
+        beats.addLast(beat);
+        while (beats.size() > 1 && now - secondOldest() > maxLagMillis) {
+            beats.removeFirst();
+        }
+    }
+
+    synchronized void checkReplica() {
+        List<Long> seen = replica.queryForList("select beat from " + TABLE + " where id = 1", Long.class);
+        long now = System.currentTimeMillis();
+        if (seen.isEmpty() || beats.isEmpty()) {
+            lagMillis = -1;
+            return;
+        }
+        long replicaBeat = seen.get(0);
+        for (long beat : beats) {
+            if (beat > replicaBeat) {
+                lagMillis = Math.max(0, now - beat);
+                return;
+            }
+        }
+        lagMillis = 0;
+    }
+
+    private long secondOldest() {
+        return beats.stream().skip(1).findFirst().orElseThrow();
+    }
+}
@@ -0,0 +1,22 @@
+package ar.meetus.tasky.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+
+public class TaskBatchDeleteRequest {
+    @NotEmpty(message = "At least one task id is required")
+    private List<@NotNull(message = "Task id is required") Long> ids;
+
+    // Constructors
+    public TaskBatchDeleteRequest() {}
+
+    public TaskBatchDeleteRequest(List<Long> ids) {
+        this.ids = ids;
+    }
+
+    // Getters and Setters
+    public List<Long> getIds() { return ids; }
+    public void setIds(List<Long> ids) { this.ids = ids; }
+}
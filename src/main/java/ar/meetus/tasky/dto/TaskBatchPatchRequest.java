@@ -0,0 +1,23 @@
+package ar.meetus.tasky.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.List;
+
+public class TaskBatchPatchRequest {
+    @NotEmpty(message = "At least one task is required", groups = TaskRequest.Patch.class)
+    @Valid
+    private List<TaskPatchItem> tasks;
+
+    // Constructors
+    public TaskBatchPatchRequest() {}
+
+    public TaskBatchPatchRequest(List<TaskPatchItem> tasks) {
+        this.tasks = tasks;
+    }
+
+    // Getters and Setters
+    public List<TaskPatchItem> getTasks() { return tasks; }
+    public void setTasks(List<TaskPatchItem> tasks) { this.tasks = tasks; }
+}
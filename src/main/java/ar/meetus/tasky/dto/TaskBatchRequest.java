@@ -0,0 +1,23 @@
+package ar.meetus.tasky.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.List;
+
+public class TaskBatchRequest {
+    @NotEmpty(message = "At least one task is required")
+    @Valid
+    private List<TaskRequest> tasks;
+
+    // Constructors
+    public TaskBatchRequest() {}
+
+    public TaskBatchRequest(List<TaskRequest> tasks) {
+        this.tasks = tasks;
+    }
+
+    // Getters and Setters
+    public List<TaskRequest> getTasks() { return tasks; }
+    public void setTasks(List<TaskRequest> tasks) { this.tasks = tasks; }
+}
@@ -0,0 +1,40 @@
+package ar.meetus.tasky.dto;
+
+import java.util.List;
+
+public class TaskChangesResponse {
+    // High-water mark, sent back as ?since= on the next sync
+    private long version;
+    private List<TaskResponse> tasks;
+    private List<Long> deleted;
+    // The changes since the given version are no longer known (it is ahead of the server's version, or
+    // older than the tombstones kept): tasks holds every task and the client replaces its copy with them
+    private boolean reset;
+
+    // Constructors
+    public TaskChangesResponse() {}
+
+    public TaskChangesResponse(long version, List<TaskResponse> tasks, List<Long> deleted) {
+        this(version, tasks, deleted, false);
+    }
+
+    public TaskChangesResponse(long version, List<TaskResponse> tasks, List<Long> deleted, boolean reset) {
+        this.version = version;
+        this.tasks = tasks;
+        this.deleted = deleted;
+        this.reset = reset;
+    }
+
+    // Getters and Setters
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+
+    public List<TaskResponse> getTasks() { return tasks; }
+    public void setTasks(List<TaskResponse> tasks) { this.tasks = tasks; }
+
+    public List<Long> getDeleted() { return deleted; }
+    public void setDeleted(List<Long> deleted) { this.deleted = deleted; }
+
+    public boolean isReset() { return reset; }
+    public void setReset(boolean reset) { this.reset = reset; }
+}
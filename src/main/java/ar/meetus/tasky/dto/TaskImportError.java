@@ -0,0 +1,22 @@
+package ar.meetus.tasky.dto;
+
+public class TaskImportError {
+    // Line of the body where the rejected record starts, 1-based
+    private long line;
+    private String message;
+
+    // Constructors
+    public TaskImportError() {}
+
+    public TaskImportError(long line, String message) {
+        this.line = line;
+        this.message = message;
+    }
+
+    // Getters and Setters
+    public long getLine() { return line; }
+    public void setLine(long line) { this.line = line; }
+
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+}
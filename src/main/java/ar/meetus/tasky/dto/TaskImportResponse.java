@@ -0,0 +1,40 @@
+package ar.meetus.tasky.dto;
+
+import java.util.List;
+
+public class TaskImportResponse {
+    private long imported;
+    private long failed;
+    private long elapsedMillis;
+    private long rowsPerSecond;
+    // First rejected records, up to tasks.import.max-errors; failed counts all of them
+    private List<TaskImportError> errors;
+
+    // Constructors
+    public TaskImportResponse() {}
+
+    public TaskImportResponse(long imported, long failed, long elapsedMillis, long rowsPerSecond,
+                              List<TaskImportError> errors) {
+        this.imported = imported;
+        this.failed = failed;
+        this.elapsedMillis = elapsedMillis;
+        this.rowsPerSecond = rowsPerSecond;
+        this.errors = errors;
+    }
+
+    // Getters and Setters
+    public long getImported() { return imported; }
+    public void setImported(long imported) { this.imported = imported; }
+
+    public long getFailed() { return failed; }
+    public void setFailed(long failed) { this.failed = failed; }
+
+    public long getElapsedMillis() { return elapsedMillis; }
+    public void setElapsedMillis(long elapsedMillis) { this.elapsedMillis = elapsedMillis; }
+
+    public long getRowsPerSecond() { return rowsPerSecond; }
+    public void setRowsPerSecond(long rowsPerSecond) { this.rowsPerSecond = rowsPerSecond; }
+
+    public List<TaskImportError> getErrors() { return errors; }
+    public void setErrors(List<TaskImportError> errors) { this.errors = errors; }
+}
@@ -0,0 +1,23 @@
+package ar.meetus.tasky.dto;
+
+import java.util.List;
+
+public class TaskPage {
+    private List<TaskResponse> items;
+    private Long nextCursor;
+
+    // Constructors
+    public TaskPage() {}
+
+    public TaskPage(List<TaskResponse> items, Long nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    // Getters and Setters
+    public List<TaskResponse> getItems() { return items; }
+    public void setItems(List<TaskResponse> items) { this.items = items; }
+
+    public Long getNextCursor() { return nextCursor; }
+    public void setNextCursor(Long nextCursor) { this.nextCursor = nextCursor; }
+}
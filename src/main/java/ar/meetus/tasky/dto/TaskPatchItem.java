@@ -0,0 +1,22 @@
+package ar.meetus.tasky.dto;
+
+import ar.meetus.tasky.model.Task;
+import jakarta.validation.constraints.NotNull;
+
+// A partial update of one task inside a batch, validated with the TaskRequest.Patch group
+public class TaskPatchItem extends TaskRequest {
+    @NotNull(message = "Task id is required", groups = Patch.class)
+    private Long id;
+
+    // Constructors
+    public TaskPatchItem() {}
+
+    public TaskPatchItem(Long id, String title, String description, Task.TaskStatus status) {
+        super(title, description, status);
+        this.id = id;
+    }
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+}
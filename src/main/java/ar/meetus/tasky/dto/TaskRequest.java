@@ -2,14 +2,20 @@ package ar.meetus.tasky.dto;
 
 import ar.meetus.tasky.model.Task;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.Size;
+import jakarta.validation.groups.Default;
 
 public class TaskRequest {
+    // Validation group for partial updates, where every field is optional
+    public interface Patch {}
+
     @NotBlank(message = "Title is required")
-    @Size(max = 200, message = "Title must not exceed 200 characters")
+    @Pattern(regexp = "(?s).*\\S.*", message = "Title must not be blank", groups = Patch.class)
+    @Size(max = 200, message = "Title must not exceed 200 characters", groups = {Default.class, Patch.class})
     private String title;
 
-    @Size(max = 1000, message = "Description must not exceed 1000 characters")
+    @Size(max = 1000, message = "Description must not exceed 1000 characters", groups = {Default.class, Patch.class})
     private String description;
 
     private Task.TaskStatus status;
@@ -0,0 +1,29 @@
+package ar.meetus.tasky.dto;
+
+import java.util.List;
+
+public class TaskStreamEvent {
+    private String type;
+    // Change version of the write, GET /tasks/changes?since= fetches the details
+    private long version;
+    private List<Long> ids;
+
+    // Constructors
+    public TaskStreamEvent() {}
+
+    public TaskStreamEvent(String type, long version, List<Long> ids) {
+        this.type = type;
+        this.version = version;
+        this.ids = ids;
+    }
+
+    // Getters and Setters
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+
+    public List<Long> getIds() { return ids; }
+    public void setIds(List<Long> ids) { this.ids = ids; }
+}
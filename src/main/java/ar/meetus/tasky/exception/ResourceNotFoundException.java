@@ -0,0 +1,7 @@
+package ar.meetus.tasky.exception;
+
+public class ResourceNotFoundException extends RuntimeException {
+    public ResourceNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package ar.meetus.tasky.exception;
+
+// Thrown when a bounded resource is saturated, the request may be retried later
+public class ServiceBusyException extends RuntimeException {
+    public ServiceBusyException(String message) {
+        super(message);
+    }
+}
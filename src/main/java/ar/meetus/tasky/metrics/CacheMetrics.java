@@ -0,0 +1,21 @@
+package ar.meetus.tasky.metrics;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+// Binds caches built outside the Spring CacheManager with the same tag keys Spring Boot gives managed
+// caches (cache, cache.manager, name). Prometheus rejects a meter whose tag keys differ from the ones
+// already registered under its name, so a mismatch would silently drop one of the caches.
+public final class CacheMetrics {
+
+    public static final String CACHE_MANAGER = "tasky";
+
+    private CacheMetrics() {
+    }
+
+    public static void monitor(MeterRegistry meterRegistry, Cache<?, ?> cache, String name) {
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, name, Tags.of("cache.manager", CACHE_MANAGER, "name", name));
+    }
+}
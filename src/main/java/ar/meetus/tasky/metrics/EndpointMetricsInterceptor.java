@@ -0,0 +1,82 @@
+package ar.meetus.tasky.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Times every controller endpoint with timers registered up front, one per endpoint and outcome,
+// so a request only does a map lookup and a record call instead of building tags.
+@Component
+public class EndpointMetricsInterceptor implements HandlerInterceptor {
+
+    private static final String START_ATTRIBUTE = EndpointMetricsInterceptor.class.getName() + ".start";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Method, EndpointTimers> timers = new ConcurrentHashMap<>();
+
+    public EndpointMetricsInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    // The handler mapping is looked up here, injecting it would form a cycle through WebMvcConfigurer
+    @EventListener
+    public void registerTimers(ApplicationReadyEvent event) {
+        event.getApplicationContext()
+                .getBean("requestMappingHandlerMapping", RequestMappingHandlerMapping.class)
+                .getHandlerMethods().values().forEach(this::timersFor);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // Kept on the async dispatch of a streaming response, so the whole request is timed
+        if (request.getAttribute(START_ATTRIBUTE) == null) {
+            request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (!(handler instanceof HandlerMethod handlerMethod) || !(request.getAttribute(START_ATTRIBUTE) instanceof Long start)) {
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        timersFor(handlerMethod).forStatus(ex != null ? 500 : response.getStatus())
+                .record(elapsed, TimeUnit.NANOSECONDS);
+    }
+
+    private EndpointTimers timersFor(HandlerMethod handlerMethod) {
+        return timers.computeIfAbsent(handlerMethod.getMethod(), method -> new EndpointTimers(
+                timer(handlerMethod, "success"), timer(handlerMethod, "client_error"), timer(handlerMethod, "server_error")));
+    }
+
+    private Timer timer(HandlerMethod handlerMethod, String outcome) {
+        return Timer.builder("tasky.http.requests")
+                .description("Controller endpoint latency")
+                .tag("endpoint", handlerMethod.getBeanType().getSimpleName() + "." + handlerMethod.getMethod().getName())
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(meterRegistry);
+    }
+
+    private record EndpointTimers(Timer success, Timer clientError, Timer serverError) {
+        Timer forStatus(int status) {
+            return status >= 500 ? serverError : status >= 400 ? clientError : success;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package ar.meetus.tasky.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.hibernate.SessionEventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// JDBC statement count and time per Hibernate session. With open-in-view a web request uses a
+// single session, so these are per-request figures. Hibernate instantiates the listener itself
+// (hibernate.session.events.auto), hence the static hand-off of the meters.
+@Component
+public class HibernateSessionMetrics {
+
+    private static volatile DistributionSummary statements;
+    private static volatile Timer jdbcTime;
+
+    public HibernateSessionMetrics(MeterRegistry meterRegistry) {
+        statements = DistributionSummary.builder("tasky.hibernate.session.statements")
+                .description("JDBC statements executed per Hibernate session")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1.0)
+                .maximumExpectedValue(1000.0)
+                .register(meterRegistry);
+        jdbcTime = Timer.builder("tasky.hibernate.session.jdbc")
+                .description("Time spent executing JDBC statements per Hibernate session")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(meterRegistry);
+    }
+
+    public static class Listener implements SessionEventListener {
+
+        private int count;
+        private long nanos;
+        private long executeStart;
+        private long batchStart;
+
+        @Override
+        public void jdbcExecuteStatementStart() {
+            executeStart = System.nanoTime();
+        }
+
+        @Override
+        public void jdbcExecuteStatementEnd() {
+            nanos += System.nanoTime() - executeStart;
+            count++;
+        }
+
+        @Override
+        public void jdbcExecuteBatchStart() {
+            batchStart = System.nanoTime();
+        }
+
+        @Override
+        public void jdbcExecuteBatchEnd() {
+            nanos += System.nanoTime() - batchStart;
+            count++;
+        }
+
+        @Override
+        public void end() {
+            DistributionSummary statementsSummary = statements;
+            Timer jdbcTimer = jdbcTime;
+            // Sessions without any statement (e.g. a 304 or a cache hit) are not counted
+            if (count == 0 || statementsSummary == null) {
+                return;
+            }
+            statementsSummary.record(count);
+            jdbcTimer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package ar.meetus.tasky.metrics;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+// /actuator/queries: recent over-budget requests and slow statements, DELETE clears them
+@Component
+@Endpoint(id = "queries")
+public class QueriesEndpoint {
+
+    private final QueryInspector queryInspector;
+
+    public QueriesEndpoint(QueryInspector queryInspector) {
+        this.queryInspector = queryInspector;
+    }
+
+    @ReadOperation
+    public QueryInspector.QueryReport queries() {
+        return queryInspector.report();
+    }
+
+    @DeleteOperation
+    public void clear() {
+        queryInspector.clear();
+    }
+}
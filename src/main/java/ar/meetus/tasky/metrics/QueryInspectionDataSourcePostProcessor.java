@@ -0,0 +1,36 @@
+package ar.meetus.tasky.metrics;
+
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+// Wraps the DataSource with datasource-proxy so every statement reaches QueryInspector. The inspector
+// is resolved lazily, a post processor must not pull in regular beans (and the MeterRegistry) early.
+// Routing and delegating data sources are left alone, the pools behind them are wrapped already.
+@Component
+public class QueryInspectionDataSourcePostProcessor implements BeanPostProcessor {
+
+    private final ObjectProvider<QueryInspector> queryInspector;
+
+    public QueryInspectionDataSourcePostProcessor(ObjectProvider<QueryInspector> queryInspector) {
+        this.queryInspector = queryInspector;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)
+                && !(bean instanceof AbstractRoutingDataSource) && !(bean instanceof DelegatingDataSource)) {
+            return ProxyDataSourceBuilder.create(dataSource)
+                    .name(beanName)
+                    .listener(queryInspector.getObject())
+                    .build();
+        }
+        return bean;
+    }
+}
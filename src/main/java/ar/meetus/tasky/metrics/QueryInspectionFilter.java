@@ -0,0 +1,43 @@
+package ar.meetus.tasky.metrics;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+// Scopes QueryInspector's statement count to a request; runs ahead of the security chain so the
+// user lookup done while authenticating is counted too
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class QueryInspectionFilter extends OncePerRequestFilter {
+
+    private final QueryInspector queryInspector;
+
+    public QueryInspectionFilter(QueryInspector queryInspector) {
+        this.queryInspector = queryInspector;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        queryInspector.beginRequest();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            queryInspector.endRequest(endpoint(request));
+        }
+    }
+
+    // Route pattern rather than the raw URI, so requests for different task ids group together
+    private static String endpoint(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return request.getMethod() + " " + (pattern != null ? pattern : request.getRequestURI());
+    }
+}
@@ -0,0 +1,149 @@
+package ar.meetus.tasky.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+// Counts JDBC statements per HTTP request and keeps the recent requests that went over the statement
+// budget (typically N+1 lazy loads of Task.user or User.tasks) and the recent slow statements.
+// Per statement it only bumps a counter in a thread-local; strings are built for flagged entries alone.
+@Component
+public class QueryInspector implements QueryExecutionListener {
+
+    private static final int MAX_SQL_LENGTH = 1000;
+
+    private final ThreadLocal<RequestQueries> currentRequest = new ThreadLocal<>();
+    private final RingBuffer<SlowQuery> slowQueries;
+    private final RingBuffer<OverBudgetRequest> overBudgetRequests;
+    private final int statementBudget;
+    private final long slowQueryThresholdMillis;
+    private final Counter overBudgetCounter;
+    private final Counter slowQueryCounter;
+
+    public QueryInspector(@Value("${tasky.queries.statement-budget:20}") int statementBudget,
+                          @Value("${tasky.queries.slow-threshold-ms:100}") long slowQueryThresholdMillis,
+                          @Value("${tasky.queries.buffer-size:100}") int bufferSize,
+                          MeterRegistry meterRegistry) {
+        this.statementBudget = statementBudget;
+        this.slowQueryThresholdMillis = slowQueryThresholdMillis;
+        this.slowQueries = new RingBuffer<>(bufferSize);
+        this.overBudgetRequests = new RingBuffer<>(bufferSize);
+        this.overBudgetCounter = Counter.builder("tasky.jdbc.requests.over.budget")
+                .description("HTTP requests that executed more JDBC statements than the budget")
+                .register(meterRegistry);
+        this.slowQueryCounter = Counter.builder("tasky.jdbc.slow.queries")
+                .description("JDBC statements slower than the slow query threshold")
+                .register(meterRegistry);
+    }
+
+    // Start counting the statements of the request on the current thread
+    public void beginRequest() {
+        currentRequest.set(new RequestQueries());
+    }
+
+    // Stop counting and flag the request if it went over the budget
+    public void endRequest(String endpoint) {
+        RequestQueries request = currentRequest.get();
+        currentRequest.remove();
+        if (request == null || request.statements <= statementBudget) {
+            return;
+        }
+        Map.Entry<String, int[]> mostRepeated = null;
+        for (Map.Entry<String, int[]> entry : request.executions.entrySet()) {
+            if (mostRepeated == null || entry.getValue()[0] > mostRepeated.getValue()[0]) {
+                mostRepeated = entry;
+            }
+        }
+        overBudgetRequests.add(new OverBudgetRequest(Instant.now(), endpoint, request.statements,
+                truncate(mostRepeated.getKey()), mostRepeated.getValue()[0]));
+        overBudgetCounter.increment();
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        RequestQueries request = currentRequest.get();
+        if (request != null) {
+            // A batch is a single round trip, counted once
+            request.statements++;
+            for (QueryInfo queryInfo : queryInfoList) {
+                // Hibernate reuses the same SQL string instances, so the hash is cached on the string
+                request.executions.computeIfAbsent(queryInfo.getQuery(), sql -> new int[1])[0]++;
+            }
+        }
+        if (execInfo.getElapsedTime() >= slowQueryThresholdMillis) {
+            for (QueryInfo queryInfo : queryInfoList) {
+                slowQueries.add(new SlowQuery(Instant.now(), execInfo.getElapsedTime(), truncate(queryInfo.getQuery()),
+                        parameterShape(queryInfo), execInfo.isBatch() ? execInfo.getBatchSize() : 1));
+            }
+            slowQueryCounter.increment();
+        }
+    }
+
+    public List<SlowQuery> getSlowQueries() {
+        return slowQueries.snapshot();
+    }
+
+    public List<OverBudgetRequest> getOverBudgetRequests() {
+        return overBudgetRequests.snapshot();
+    }
+
+    public QueryReport report() {
+        return new QueryReport(statementBudget, slowQueryThresholdMillis, overBudgetRequests.total(),
+                slowQueries.total(), getOverBudgetRequests(), getSlowQueries());
+    }
+
+    public void clear() {
+        slowQueries.clear();
+        overBudgetRequests.clear();
+    }
+
+    // JDBC types of the bind parameters, e.g. "(Long, String)"; values are never kept
+    private static String parameterShape(QueryInfo queryInfo) {
+        List<List<ParameterSetOperation>> parameters = queryInfo.getParametersList();
+        if (parameters.isEmpty()) {
+            return "()";
+        }
+        StringJoiner shape = new StringJoiner(", ", "(", ")");
+        for (ParameterSetOperation operation : parameters.get(0)) {
+            String method = operation.getMethod().getName();
+            shape.add(method.startsWith("set") ? method.substring(3) : method);
+        }
+        return shape.toString();
+    }
+
+    private static String truncate(String sql) {
+        return sql.length() <= MAX_SQL_LENGTH ? sql : sql.substring(0, MAX_SQL_LENGTH) + "...";
+    }
+
+    private static final class RequestQueries {
+        private int statements;
+        private final Map<String, int[]> executions = new HashMap<>();
+    }
+
+    public record SlowQuery(Instant at, long elapsedMillis, String sql, String parameters, int batchSize) {
+    }
+
+    public record OverBudgetRequest(Instant at, String endpoint, int statements, String mostRepeatedSql,
+                                    int mostRepeatedCount) {
+    }
+
+    public record QueryReport(int statementBudget, long slowQueryThresholdMillis, long overBudgetRequestsTotal,
+                              long slowQueriesTotal, List<OverBudgetRequest> overBudgetRequests,
+                              List<SlowQuery> slowQueries) {
+    }
+}
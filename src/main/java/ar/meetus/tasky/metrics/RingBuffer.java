@@ -0,0 +1,48 @@
+package ar.meetus.tasky.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Fixed size, lock-free buffer keeping the most recent entries; writers overwrite the oldest slot
+class RingBuffer<T> {
+
+    private final AtomicReferenceArray<T> slots;
+    private final AtomicLong written = new AtomicLong();
+
+    RingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    void add(T entry) {
+        slots.set((int) (written.getAndIncrement() % slots.length()), entry);
+    }
+
+    // Newest first
+    List<T> snapshot() {
+        long end = written.get();
+        int size = (int) Math.min(end, slots.length());
+        List<T> entries = new ArrayList<>(size);
+        for (long i = end - 1; i >= end - size; i--) {
+            T entry = slots.get((int) (i % slots.length()));
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    long total() {
+        return written.get();
+    }
+
+    void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, null);
+        }
+    }
+}
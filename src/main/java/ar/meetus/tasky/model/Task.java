@@ -4,11 +4,21 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 
+import java.time.Instant;
+
 @Entity
-@Table(name = "tasks")
+@Table(name = "tasks", indexes = {
+        // Keyset pagination: per user, optionally filtered by status, ordered by id
+        @Index(name = "idx_tasks_user_status_id", columnList = "user_id, status, id"),
+        @Index(name = "idx_tasks_user_id", columnList = "user_id, id"),
+        // Delta sync: per user, tasks written after a given change version
+        @Index(name = "idx_tasks_user_version", columnList = "user_id, change_version")
+})
 public class Task {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Pooled sequence ids (one round trip per 50 inserts) keep JDBC insert batching possible, IDENTITY disables it
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tasks_seq")
+    @SequenceGenerator(name = "tasks_seq", sequenceName = "tasks_seq", allocationSize = 50)
     private Long id;
 
     @NotBlank(message = "Title is required")
@@ -24,6 +34,13 @@ public class Task {
     @Column(nullable = false)
     private TaskStatus status = TaskStatus.OPEN;
 
+    // Per-user change version of the last write to this task
+    @Column(name = "change_version", nullable = false)
+    private long changeVersion;
+
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
@@ -50,6 +67,12 @@ public class Task {
     public TaskStatus getStatus() { return status; }
     public void setStatus(TaskStatus status) { this.status = status; }
 
+    public long getChangeVersion() { return changeVersion; }
+    public void setChangeVersion(long changeVersion) { this.changeVersion = changeVersion; }
+
+    public Instant getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
+
     public User getUser() { return user; }
     public void setUser(User user) { this.user = user; }
 
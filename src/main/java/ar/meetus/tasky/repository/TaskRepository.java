@@ -1,14 +1,82 @@
 package ar.meetus.tasky.repository;
 
+import ar.meetus.tasky.dto.TaskResponse;
 import ar.meetus.tasky.model.Task;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface TaskRepository extends JpaRepository<Task, Long> {
     List<Task> findByUserId(Long userId);
     Optional<Task> findByIdAndUserId(Long id, Long userId);
+    List<Task> findByUserIdAndIdIn(Long userId, Collection<Long> ids);
+
+    // Read path projections: rows go straight into TaskResponse, no managed entities or User proxies
+    @Query("select new ar.meetus.tasky.dto.TaskResponse(t.id, t.title, t.description, t.status) "
+            + "from Task t where t.user.id = :userId")
+    List<TaskResponse> findResponsesByUserId(@Param("userId") Long userId);
+
+    // Export: rows are read through a forward-only cursor fetch-size rows at a time, close the stream when done.
+    // Projected rows never enter the persistence context, so nothing piles up however many tasks there are
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select new ar.meetus.tasky.dto.TaskResponse(t.id, t.title, t.description, t.status) "
+            + "from Task t where t.user.id = :userId order by t.id")
+    Stream<TaskResponse> streamResponsesByUserId(@Param("userId") Long userId);
+
+    // Keyset pagination, the cursor is the last task id of the previous page
+    @Query("select new ar.meetus.tasky.dto.TaskResponse(t.id, t.title, t.description, t.status) "
+            + "from Task t where t.user.id = :userId and t.id > :cursor order by t.id asc")
+    List<TaskResponse> findResponsesAfter(@Param("userId") Long userId, @Param("cursor") Long cursor, Limit limit);
+
+    @Query("select new ar.meetus.tasky.dto.TaskResponse(t.id, t.title, t.description, t.status) "
+            + "from Task t where t.user.id = :userId and t.id < :cursor order by t.id desc")
+    List<TaskResponse> findResponsesBefore(@Param("userId") Long userId, @Param("cursor") Long cursor, Limit limit);
+
+    @Query("select new ar.meetus.tasky.dto.TaskResponse(t.id, t.title, t.description, t.status) "
+            + "from Task t where t.user.id = :userId and t.status = :status and t.id > :cursor order by t.id asc")
+    List<TaskResponse> findResponsesAfter(@Param("userId") Long userId, @Param("status") Task.TaskStatus status,
+                                          @Param("cursor") Long cursor, Limit limit);
+
+    @Query("select new ar.meetus.tasky.dto.TaskResponse(t.id, t.title, t.description, t.status) "
+            + "from Task t where t.user.id = :userId and t.status = :status and t.id < :cursor order by t.id desc")
+    List<TaskResponse> findResponsesBefore(@Param("userId") Long userId, @Param("status") Task.TaskStatus status,
+                                           @Param("cursor") Long cursor, Limit limit);
+
+    // Delta sync, served by idx_tasks_user_version
+    @Query("select new ar.meetus.tasky.dto.TaskResponse(t.id, t.title, t.description, t.status) "
+            + "from Task t where t.user.id = :userId and t.changeVersion > :since and t.changeVersion <= :version "
+            + "order by t.changeVersion, t.id")
+    List<TaskResponse> findResponsesChangedBetween(@Param("userId") Long userId, @Param("since") long since,
+                                                   @Param("version") long version);
+
+    // Ownership-scoped single statement writes, the affected row count tells whether the task exists
+    @Modifying
+    @Query("update Task t set t.title = coalesce(:title, t.title), "
+            + "t.description = coalesce(:description, t.description), t.status = coalesce(:status, t.status), "
+            + "t.changeVersion = :version, t.updatedAt = :updatedAt "
+            + "where t.id = :id and t.user.id = :userId")
+    int patchByIdAndUserId(@Param("id") Long id, @Param("userId") Long userId, @Param("title") String title,
+                           @Param("description") String description, @Param("status") Task.TaskStatus status,
+                           @Param("version") long version, @Param("updatedAt") Instant updatedAt);
+
+    @Modifying
+    @Query("delete from Task t where t.id = :id and t.user.id = :userId")
+    int deleteByIdAndUserId(@Param("id") Long id, @Param("userId") Long userId);
+
+    @Modifying
+    @Query("delete from Task t where t.user.id = :userId and t.id in :ids")
+    int deleteByUserIdAndIdIn(@Param("userId") Long userId, @Param("ids") Collection<Long> ids);
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+package ar.meetus.tasky.repository;
+
+import ar.meetus.tasky.model.TaskTombstone;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface TaskTombstoneRepository extends JpaRepository<TaskTombstone, Long> {
+
+    @Query("select t.taskId from TaskTombstone t "
+            + "where t.userId = :userId and t.changeVersion > :since and t.changeVersion <= :version")
+    List<Long> findTaskIdsDeletedBetween(@Param("userId") Long userId, @Param("since") long since,
+                                         @Param("version") long version);
+
+    @Modifying
+    @Query("delete from TaskTombstone t where t.deletedAt < :before")
+    int deleteDeletedBefore(@Param("before") Instant before);
+}
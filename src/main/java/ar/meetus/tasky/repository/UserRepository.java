@@ -1,13 +1,66 @@
 package ar.meetus.tasky.repository;
 
 import ar.meetus.tasky.model.User;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
+
+    String CACHE = "users";
+
+    // Runs for every authenticated request, cached by email until the user is written or the TTL passes.
+    // Read-only, so a miss is served by the replica when read/write routing is enabled
+    @Cacheable(cacheNames = CACHE, unless = "#result == null")
+    @Transactional(readOnly = true)
     Optional<User> findByEmail(String email);
+
     boolean existsByEmail(String email);
-}
\ No newline at end of file
+
+    // Locks the user row until commit, so task writers of one user are serialized and
+    // their change versions become visible in increasing order. Bumps and reads the version in one
+    // round trip through H2's data change delta table
+    @Query(value = "select task_version from final table "
+            + "(update users set task_version = task_version + 1 where id = :id)", nativeQuery = true)
+    long incrementAndGetTaskVersion(@Param("id") Long id);
+
+    @Query("select u.taskVersion from User u where u.id = :id")
+    long findTaskVersion(@Param("id") Long id);
+
+    @Query("select u.tombstoneHorizon from User u where u.id = :id")
+    long findTombstoneHorizon(@Param("id") Long id);
+
+    // Moves the horizon of every user with tombstones deleted before the cutoff up to the newest of them,
+    // run in the transaction that purges those tombstones
+    @Modifying
+    @Query("update User u set u.tombstoneHorizon = (select max(t.changeVersion) from TaskTombstone t "
+            + "where t.userId = u.id and t.deletedAt < :before) "
+            + "where exists (select t.id from TaskTombstone t where t.userId = u.id and t.deletedAt < :before)")
+    int raiseTombstoneHorizons(@Param("before") Instant before);
+
+    @Override
+    @CacheEvict(cacheNames = CACHE, key = "#p0.email")
+    <S extends User> S save(S user);
+
+    @Override
+    @CacheEvict(cacheNames = CACHE, allEntries = true)
+    <S extends User> List<S> saveAll(Iterable<S> users);
+
+    @Override
+    @CacheEvict(cacheNames = CACHE, key = "#p0.email")
+    void delete(User user);
+
+    @Override
+    @CacheEvict(cacheNames = CACHE, allEntries = true)
+    void deleteById(Long id);
+}
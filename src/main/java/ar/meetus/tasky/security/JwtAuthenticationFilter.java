@@ -1,12 +1,19 @@
 package ar.meetus.tasky.security;
 
 import ar.meetus.tasky.service.UserDetailsServiceImpl;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
@@ -14,45 +21,80 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
+    public static final String ADMIN_AUTHORITY = "ADMIN";
+    private static final List<GrantedAuthority> ADMIN = List.of(new SimpleGrantedAuthority(ADMIN_AUTHORITY));
+
     @Autowired
     private JwtUtil jwtUtil;
 
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
 
+    @Autowired
+    private TokenCache tokenCache;
+
+    @Autowired
+    private TokenDenylist tokenDenylist;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Build the principal from token claims instead of loading the user, tokens without claims use the lookup
+    @Value("${jwt.stateless-principal.enabled:false}")
+    private boolean statelessPrincipal;
+
+    // Granted from configuration rather than token claims, so a token can never make itself admin
+    @Value("${security.admin-emails:}")
+    private Set<String> adminEmails;
+
+    // Stage timers are registered once, recording never allocates tags
+    private Timer parseTimer;
+    private Timer cacheTimer;
+    private Timer verifyTimer;
+    private Timer loadTimer;
+
+    @PostConstruct
+    void initMetrics() {
+        parseTimer = stageTimer("parse");
+        cacheTimer = stageTimer("cache");
+        verifyTimer = stageTimer("verify");
+        loadTimer = stageTimer("load");
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
             throws ServletException, IOException {
 
-        final String requestTokenHeader = request.getHeader("Authorization");
+        // JWT Token is in the form "Bearer token". Malformed headers are rejected before any crypto
+        long start = System.nanoTime();
+        final String jwtToken = jwtUtil.extractBearerToken(request.getHeader("Authorization"));
+        start = record(parseTimer, start);
 
-        String username = null;
-        String jwtToken = null;
-
-        // JWT Token is in the form "Bearer token". Remove Bearer word and get only the Token
-        if (requestTokenHeader != null && requestTokenHeader.startsWith("Bearer ")) {
-            jwtToken = requestTokenHeader.substring(7);
-            try {
-                username = jwtUtil.extractUsername(jwtToken);
-            } catch (Exception e) {
-                logger.error("Unable to get JWT Token");
+        if (jwtToken != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            // Tokens seen before were already verified, skip the signature check and user lookup.
+            // Revocation is still checked, a token may be revoked after it was cached
+            UserDetails userDetails;
+            TokenCache.CachedPrincipal cached = tokenCache.lookup(jwtToken);
+            if (cached != null) {
+                userDetails = tokenDenylist.isRevoked(cached.tokenId()) ? null : cached.principal();
+                record(cacheTimer, start);
+            } else {
+                userDetails = verifyToken(jwtToken);
             }
-        }
-
-        // Once we get the token validate it.
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
 
             // if token is valid configure Spring Security to manually set authentication
-            if (jwtUtil.validateToken(jwtToken, userDetails)) {
-
+            if (userDetails != null) {
                 UsernamePasswordAuthenticationToken usernamePasswordAuthenticationToken = new UsernamePasswordAuthenticationToken(
-                        userDetails, null, userDetails.getAuthorities());
+                        userDetails, null, authorities(userDetails));
                 usernamePasswordAuthenticationToken
                         .setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 // After setting the Authentication in the context, we specify
@@ -63,4 +105,56 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
         chain.doFilter(request, response);
     }
-}
\ No newline at end of file
+
+    private Collection<? extends GrantedAuthority> authorities(UserDetails userDetails) {
+        return adminEmails.contains(userDetails.getUsername()) ? ADMIN : userDetails.getAuthorities();
+    }
+
+    // Full verification path: parse and check the signature, load the user and cache the result
+    private UserDetails verifyToken(String jwtToken) {
+        long start = System.nanoTime();
+        Claims claims = jwtUtil.parseToken(jwtToken);
+        boolean revoked = claims != null && tokenDenylist.isRevoked(claims.getId());
+        start = record(verifyTimer, start);
+        if (claims == null) {
+            logger.error("Unable to get JWT Token");
+            return null;
+        }
+        if (revoked) {
+            return null;
+        }
+
+        if (statelessPrincipal) {
+            JwtPrincipal principal = JwtPrincipal.fromClaims(claims);
+            if (principal != null) {
+                tokenCache.put(jwtToken, principal, claims.getId(), claims.getExpiration());
+                return principal;
+            }
+        }
+
+        UserDetails userDetails = this.userDetailsService.loadUserByUsername(claims.getSubject());
+        record(loadTimer, start);
+        if (!jwtUtil.validateClaims(claims, userDetails)) {
+            return null;
+        }
+        tokenCache.put(jwtToken, userDetails, claims.getId(), claims.getExpiration());
+        return userDetails;
+    }
+
+    private Timer stageTimer(String stage) {
+        return Timer.builder("tasky.auth.filter")
+                .description("JwtAuthenticationFilter stages: header parse, token cache hit, token verify, user load")
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(100))
+                .maximumExpectedValue(Duration.ofSeconds(1))
+                .register(meterRegistry);
+    }
+
+    // Records the time since start and returns the current time as the start of the next stage
+    private static long record(Timer timer, long start) {
+        long now = System.nanoTime();
+        timer.record(now - start, TimeUnit.NANOSECONDS);
+        return now;
+    }
+}
@@ -0,0 +1,55 @@
+package ar.meetus.tasky.security;
+
+import io.jsonwebtoken.Claims;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.Collections;
+
+// Lightweight principal built from token claims alone, no users table lookup involved
+public class JwtPrincipal implements UserDetails {
+
+    public static final String USER_ID_CLAIM = "uid";
+    public static final String NAME_CLAIM = "name";
+
+    private final Long id;
+    private final String email;
+    private final String name;
+
+    public JwtPrincipal(Long id, String email, String name) {
+        this.id = id;
+        this.email = email;
+        this.name = name;
+    }
+
+    // Returns null for tokens issued before the user id claim was added
+    public static JwtPrincipal fromClaims(Claims claims) {
+        Number id = claims.get(USER_ID_CLAIM, Number.class);
+        if (id == null || claims.getSubject() == null) {
+            return null;
+        }
+        return new JwtPrincipal(id.longValue(), claims.getSubject(), claims.get(NAME_CLAIM, String.class));
+    }
+
+    public Long getId() { return id; }
+
+    public String getEmail() { return email; }
+
+    public String getName() { return name; }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public String getPassword() {
+        return null;
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+}
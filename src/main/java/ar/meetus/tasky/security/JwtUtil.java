@@ -1,50 +1,181 @@
 package ar.meetus.tasky.security;
 
+import ar.meetus.tasky.model.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 
 @Component
 public class JwtUtil {
 
+    private static final String BEARER_PREFIX = "Bearer ";
+    private static final int MAX_TOKEN_LENGTH = 8192;
+
     @Value("${jwt.secret}")
     private String secret;
 
     @Value("${jwt.expiration}")
     private Long expiration;
 
-    private Key getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes());
+    // Key id of jwt.secret, used to sign new tokens unless another key is activated
+    @Value("${jwt.key-id:default}")
+    private String keyId;
+
+    // Additional verification keys as "kid:secret" pairs, e.g. keys that are being rotated out
+    @Value("${jwt.keys:}")
+    private String[] additionalKeys;
+
+    // Immutable snapshots, swapped atomically on rotation so the parser never needs rebuilding
+    private volatile Map<String, SecretKey> keys = Map.of();
+    private volatile String activeKeyId;
+
+    private JwtParser parser;
+
+    @Autowired
+    private TokenCache tokenCache;
+
+    @PostConstruct
+    void init() {
+        Map<String, SecretKey> initialKeys = new HashMap<>();
+        for (String entry : additionalKeys) {
+            int separator = entry.indexOf(':');
+            if (separator <= 0) {
+                throw new IllegalStateException("jwt.keys entries must be in the form kid:secret");
+            }
+            initialKeys.put(entry.substring(0, separator).trim(), hmacKey(entry.substring(separator + 1).trim()));
+        }
+        initialKeys.put(keyId, hmacKey(secret));
+        this.keys = Map.copyOf(initialKeys);
+        this.activeKeyId = keyId;
+
+        // JwtParser is immutable and thread-safe, the resolver looks keys up by the token's kid header
+        this.parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    @Override
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        return resolveKey(header.getKeyId());
+                    }
+                })
+                .build();
+    }
+
+    // Register a new verification key, existing tokens signed with other keys stay valid
+    public synchronized void addKey(String kid, String keySecret) {
+        Map<String, SecretKey> updated = new HashMap<>(keys);
+        updated.put(kid, hmacKey(keySecret));
+        keys = Map.copyOf(updated);
+    }
+
+    // Sign new tokens with the given key
+    public synchronized void activateKey(String kid) {
+        if (!keys.containsKey(kid)) {
+            throw new IllegalArgumentException("Unknown signing key id: " + kid);
+        }
+        activeKeyId = kid;
+    }
+
+    // Stop accepting tokens signed with the given key
+    public synchronized void removeKey(String kid) {
+        if (kid.equals(activeKeyId)) {
+            throw new IllegalArgumentException("Cannot remove the active signing key: " + kid);
+        }
+        Map<String, SecretKey> updated = new HashMap<>(keys);
+        updated.remove(kid);
+        keys = Map.copyOf(updated);
+        // Tokens signed with the removed key may still be cached as verified
+        tokenCache.invalidateAll();
     }
 
     // Generate token for user
     public String generateToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
+        // Carry the user id and name so the filter can build a JwtPrincipal without a DB lookup
+        if (userDetails instanceof User user && user.getId() != null) {
+            claims.put(JwtPrincipal.USER_ID_CLAIM, user.getId());
+            claims.put(JwtPrincipal.NAME_CLAIM, user.getName());
+        }
         return createToken(claims, userDetails.getUsername());
     }
 
     // Create token with claims and subject
     private String createToken(Map<String, Object> claims, String subject) {
+        String kid = activeKeyId;
+        long now = System.currentTimeMillis();
         return Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, kid)
                 .setClaims(claims)
                 .setSubject(subject)
-                .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                // Unique token id (jti) so a single token can be revoked on logout
+                .setId(UUID.randomUUID().toString())
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + expiration))
+                .signWith(keys.get(kid), SignatureAlgorithm.HS256)
                 .compact();
     }
 
+    // Extract the token from an Authorization header, null if it is missing or malformed
+    public String extractBearerToken(String authorizationHeader) {
+        if (authorizationHeader == null || !authorizationHeader.startsWith(BEARER_PREFIX)) {
+            return null;
+        }
+        String token = authorizationHeader.substring(BEARER_PREFIX.length());
+        return isWellFormed(token) ? token : null;
+    }
+
+    // Cheap structural check (three non-empty base64url segments) done before any crypto
+    public boolean isWellFormed(String token) {
+        if (token == null || token.isEmpty() || token.length() > MAX_TOKEN_LENGTH) {
+            return false;
+        }
+        int dots = 0;
+        int segmentLength = 0;
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c == '.') {
+                if (segmentLength == 0 || ++dots > 2) {
+                    return false;
+                }
+                segmentLength = 0;
+            } else if (isBase64UrlChar(c)) {
+                segmentLength++;
+            } else {
+                return false;
+            }
+        }
+        return dots == 2 && segmentLength > 0;
+    }
+
+    // Verify the token once and return its claims (subject, expiration, ...), null if invalid or expired
+    public Claims parseToken(String token) {
+        if (!isWellFormed(token)) {
+            return null;
+        }
+        try {
+            return parser.parseClaimsJws(token).getBody();
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     // Extract username from token
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
@@ -63,31 +194,39 @@ public class JwtUtil {
 
     // Extract all claims from token
     private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-    }
-
-    // Check if token is expired
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+        return parser.parseClaimsJws(token).getBody();
     }
 
     // Validate token
     public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        final Claims claims = parseToken(token);
+        return claims != null && validateClaims(claims, userDetails);
+    }
+
+    // Validate already parsed claims, avoids parsing the token again
+    public boolean validateClaims(Claims claims, UserDetails userDetails) {
+        return claims.getSubject().equals(userDetails.getUsername()) && claims.getExpiration().after(new Date());
     }
 
     // Validate token format and signature
     public boolean validateToken(String token) {
-        try {
-            Jwts.parserBuilder().setSigningKey(getSigningKey()).build().parseClaimsJws(token);
-            return true;
-        } catch (JwtException | IllegalArgumentException e) {
-            return false;
+        return parseToken(token) != null;
+    }
+
+    private Key resolveKey(String kid) {
+        // Tokens issued before key ids were introduced carry no kid and were signed with jwt.secret
+        SecretKey key = keys.get(kid != null ? kid : keyId);
+        if (key == null) {
+            throw new JwtException("Unknown signing key id: " + kid);
         }
+        return key;
+    }
+
+    private static SecretKey hmacKey(String keySecret) {
+        return Keys.hmacShaKeyFor(keySecret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static boolean isBase64UrlChar(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '_';
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,135 @@
+package ar.meetus.tasky.security;
+
+import ar.meetus.tasky.dto.ErrorResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Runs after JwtAuthenticationFilter: /tasks requests are limited per authenticated user, login and
+// register per client IP with stricter limits since they are unauthenticated and cost a bcrypt hash
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${rate-limit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${rate-limit.tasks.permits-per-minute:1200}")
+    private int tasksPermitsPerMinute;
+
+    @Value("${rate-limit.tasks.burst:200}")
+    private int tasksBurst;
+
+    @Value("${rate-limit.login.permits-per-minute:60}")
+    private int loginPermitsPerMinute;
+
+    @Value("${rate-limit.login.burst:20}")
+    private int loginBurst;
+
+    @Value("${rate-limit.register.permits-per-minute:20}")
+    private int registerPermitsPerMinute;
+
+    @Value("${rate-limit.register.burst:20}")
+    private int registerBurst;
+
+    private Group tasks;
+    private Group login;
+    private Group register;
+
+    @PostConstruct
+    void init() {
+        tasks = new Group("tasks", new RateLimiter(tasksPermitsPerMinute, tasksBurst));
+        login = new Group("login", new RateLimiter(loginPermitsPerMinute, loginBurst));
+        register = new Group("register", new RateLimiter(registerPermitsPerMinute, registerBurst));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        long waitNanos = 0;
+        Group group = null;
+        if (path.equals("/tasks") || path.startsWith("/tasks/")) {
+            // Unauthenticated requests are rejected by the security chain without touching the database
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            if (authentication != null && authentication.isAuthenticated()) {
+                group = tasks;
+                waitNanos = tasks.limiter.tryAcquire(authentication.getName());
+            }
+        } else if ("POST".equals(request.getMethod()) && path.equals("/auth/login")) {
+            group = login;
+            waitNanos = login.limiter.tryAcquire(request.getRemoteAddr());
+        } else if ("POST".equals(request.getMethod()) && path.equals("/auth/register")) {
+            group = register;
+            waitNanos = register.limiter.tryAcquire(request.getRemoteAddr());
+        }
+
+        if (waitNanos > 0) {
+            group.rejected.increment();
+            reject(response, waitNanos);
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    @Scheduled(initialDelayString = "${rate-limit.eviction-interval-ms:60000}",
+            fixedDelayString = "${rate-limit.eviction-interval-ms:60000}")
+    public void evictIdleBuckets() {
+        tasks.limiter.evictIdle();
+        login.limiter.evictIdle();
+        register.limiter.evictIdle();
+    }
+
+    private void reject(HttpServletResponse response, long waitNanos) throws IOException {
+        // Retry-After is in whole seconds, rounded up so a client honouring it gets a permit
+        long retryAfterSeconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new ErrorResponse(
+                "Too Many Requests",
+                "Rate limit exceeded, retry after " + retryAfterSeconds + " seconds",
+                HttpStatus.TOO_MANY_REQUESTS.value()));
+    }
+
+    private final class Group {
+        private final RateLimiter limiter;
+        private final Counter rejected;
+
+        private Group(String name, RateLimiter limiter) {
+            this.limiter = limiter;
+            this.rejected = Counter.builder("tasky.rate.limit.rejected")
+                    .description("Requests rejected with 429 by the rate limiter")
+                    .tag("group", name)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package ar.meetus.tasky.security;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Token buckets implemented with GCRA (generic cell rate algorithm): a bucket is a single AtomicLong holding
+// its theoretical arrival time, so acquiring is one CAS and needs no refill thread or lock. Buckets live in
+// a ConcurrentHashMap, whose bins are locked independently only when a key is first inserted.
+public class RateLimiter {
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final LongSupplier clock;
+    private final long origin;
+
+    public RateLimiter(int permitsPerMinute, int burst) {
+        this(permitsPerMinute, burst, System::nanoTime);
+    }
+
+    RateLimiter(int permitsPerMinute, int burst, LongSupplier clock) {
+        if (permitsPerMinute <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("permitsPerMinute and burst must be positive");
+        }
+        this.intervalNanos = TimeUnit.MINUTES.toNanos(1) / permitsPerMinute;
+        this.burstNanos = intervalNanos * burst;
+        this.clock = clock;
+        // nanoTime may be negative, times are kept relative to construction so an empty bucket is simply 0
+        this.origin = clock.getAsLong();
+    }
+
+    // Takes a permit for the key, returns 0 if granted or the nanoseconds until one becomes available
+    public long tryAcquire(String key) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(key, k -> new AtomicLong());
+        }
+        long now = now();
+        while (true) {
+            long arrival = bucket.get();
+            long next = Math.max(arrival, now) + intervalNanos;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(arrival, next)) {
+                return 0;
+            }
+        }
+    }
+
+    // Drops buckets that have refilled completely, they are indistinguishable from a new bucket. A request
+    // racing with the removal may be granted on the dropped bucket, at most one extra permit.
+    public void evictIdle() {
+        long now = now();
+        buckets.values().removeIf(bucket -> bucket.get() <= now);
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    private long now() {
+        return clock.getAsLong() - origin;
+    }
+}
@@ -0,0 +1,80 @@
+package ar.meetus.tasky.security;
+
+import ar.meetus.tasky.metrics.CacheMetrics;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Date;
+
+// Maps verified tokens to their principal so repeat requests skip signature verification
+// and the user lookup. Keyed by a SHA-256 digest of the token; entries expire with the token.
+@Component
+public class TokenCache {
+
+    private final Cache<String, CachedPrincipal> cache;
+
+    public TokenCache(@Value("${jwt.cache.max-size:10000}") long maxSize, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(Expiry.creating((String key, CachedPrincipal value) -> value.timeToLive()))
+                .recordStats()
+                .build();
+        // Hits, misses and evictions as cache.* meters tagged cache=jwt.tokens
+        CacheMetrics.monitor(meterRegistry, cache, "jwt.tokens");
+    }
+
+    // Returns the cached principal for the token, or null if it was never verified or has expired
+    public UserDetails get(String token) {
+        CachedPrincipal cached = lookup(token);
+        return cached != null ? cached.principal() : null;
+    }
+
+    // Same as get, but also exposes the token id so callers can check it against the denylist
+    public CachedPrincipal lookup(String token) {
+        return cache.getIfPresent(digest(token));
+    }
+
+    // Caches a verified principal until the token's expiration
+    public void put(String token, UserDetails principal, Date expiration) {
+        put(token, principal, null, expiration);
+    }
+
+    public void put(String token, UserDetails principal, String tokenId, Date expiration) {
+        if (expiration.getTime() > System.currentTimeMillis()) {
+            cache.put(digest(token), new CachedPrincipal(principal, tokenId, expiration.getTime()));
+        }
+    }
+
+    public void invalidate(String token) {
+        cache.invalidate(digest(token));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public record CachedPrincipal(UserDetails principal, String tokenId, long expiresAtMillis) {
+        Duration timeToLive() {
+            return Duration.ofMillis(Math.max(0, expiresAtMillis - System.currentTimeMillis()));
+        }
+    }
+}
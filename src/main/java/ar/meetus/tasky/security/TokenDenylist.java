@@ -0,0 +1,84 @@
+package ar.meetus.tasky.security;
+
+import ar.meetus.tasky.model.RevokedToken;
+import ar.meetus.tasky.repository.RevokedTokenRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Revoked token ids (jti) until their token expires. A Bloom filter answers "never revoked" for
+// almost every request without touching the map; revocations are persisted so they survive a restart.
+@Component
+public class TokenDenylist {
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final int expectedEntries;
+
+    // jti -> token expiration in epoch millis
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+    private volatile BloomFilter filter;
+
+    public TokenDenylist(RevokedTokenRepository revokedTokenRepository,
+                         @Value("${jwt.revocation.expected-entries:100000}") int expectedEntries) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.expectedEntries = expectedEntries;
+        this.filter = new BloomFilter(expectedEntries, FALSE_POSITIVE_RATE);
+    }
+
+    // Restore revocations of tokens that have not expired yet
+    @PostConstruct
+    void load() {
+        for (RevokedToken token : revokedTokenRepository.findByExpiresAtAfter(Instant.now())) {
+            add(token.getId(), token.getExpiresAt().toEpochMilli());
+        }
+    }
+
+    public boolean isRevoked(String tokenId) {
+        if (tokenId == null || !filter.mightContain(tokenId)) {
+            return false;
+        }
+        return revoked.containsKey(tokenId);
+    }
+
+    public void revoke(String tokenId, Date expiration) {
+        if (tokenId == null || expiration.getTime() <= System.currentTimeMillis() || isRevoked(tokenId)) {
+            return;
+        }
+        revokedTokenRepository.save(new RevokedToken(tokenId, expiration.toInstant()));
+        add(tokenId, expiration.getTime());
+    }
+
+    public int size() {
+        return revoked.size();
+    }
+
+    // Expired tokens fail verification on their own, so their entries can go. The Bloom filter cannot
+    // delete, it is rebuilt from what is left and grown if revocations outnumber the expected entries.
+    @Scheduled(initialDelayString = "${jwt.revocation.purge-interval-ms:600000}",
+            fixedDelayString = "${jwt.revocation.purge-interval-ms:600000}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        revoked.values().removeIf(expiresAt -> expiresAt <= now);
+        revokedTokenRepository.deleteExpired(Instant.ofEpochMilli(now));
+
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedEntries, revoked.size() * 2), FALSE_POSITIVE_RATE);
+        revoked.keySet().forEach(rebuilt::put);
+        // Ids revoked while rebuilding are in the map but maybe not in the new filter
+        filter = rebuilt;
+        revoked.keySet().forEach(rebuilt::put);
+    }
+
+    private void add(String tokenId, long expiresAtMillis) {
+        // Map first: a filter hit must always find the entry
+        revoked.put(tokenId, expiresAtMillis);
+        filter.put(tokenId);
+    }
+}
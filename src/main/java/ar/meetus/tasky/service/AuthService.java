@@ -6,12 +6,14 @@ import ar.meetus.tasky.dto.RegisterRequest;
 import ar.meetus.tasky.model.User;
 import ar.meetus.tasky.repository.UserRepository;
 import ar.meetus.tasky.security.JwtUtil;
+import ar.meetus.tasky.security.TokenCache;
+import ar.meetus.tasky.security.TokenDenylist;
+import io.jsonwebtoken.Claims;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
@@ -30,6 +32,12 @@ public class AuthService {
     @Autowired
     private AuthenticationManager authenticationManager;
 
+    @Autowired
+    private TokenDenylist tokenDenylist;
+
+    @Autowired
+    private TokenCache tokenCache;
+
     public AuthResponse register(RegisterRequest request) {
         // Check if user already exists
         if (userRepository.existsByEmail(request.getEmail())) {
@@ -58,13 +66,11 @@ public class AuthService {
                     new UsernamePasswordAuthenticationToken(request.getEmail(), request.getPassword())
             );
 
-            // Get user details
-            UserDetails userDetails = (UserDetails) authentication.getPrincipal();
-            User user = userRepository.findByEmail(userDetails.getUsername())
-                    .orElseThrow(() -> new RuntimeException("User not found"));
+            // The principal is the user loaded during authentication, no second lookup needed
+            User user = (User) authentication.getPrincipal();
 
             // Generate JWT token
-            String token = jwtUtil.generateToken(userDetails);
+            String token = jwtUtil.generateToken(user);
 
             return new AuthResponse(token, user.getName(), user.getEmail());
 
@@ -74,8 +80,13 @@ public class AuthService {
     }
 
     public void logout(String token) {
-        // For stateless JWT, we don't need to do anything server-side for logout
-        // In a production app, you might want to maintain a blacklist of tokens
-        // For this simple implementation, we'll just let the token expire naturally
+        // Invalid or already expired tokens cannot be used anyway, nothing to revoke
+        Claims claims = jwtUtil.parseToken(token);
+        if (claims == null) {
+            return;
+        }
+        // Tokens issued before the jti claim was added cannot be revoked and simply expire
+        tokenDenylist.revoke(claims.getId(), claims.getExpiration());
+        tokenCache.invalidate(token);
     }
 }
\ No newline at end of file
@@ -0,0 +1,11 @@
+package ar.meetus.tasky.service;
+
+import java.util.List;
+
+// Published whenever a user's task set is written (create, update, patch or delete)
+public record TaskChangedEvent(Long userId, Type type, List<Long> taskIds, long version) {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+}
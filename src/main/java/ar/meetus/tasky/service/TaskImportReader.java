@@ -0,0 +1,209 @@
+package ar.meetus.tasky.service;
+
+import ar.meetus.tasky.dto.TaskRequest;
+import ar.meetus.tasky.model.Task;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Reads an import body one record at a time, so only the current record is ever held in memory.
+// NDJSON is one task object per line; CSV starts with a header naming the title, description and
+// status columns, fields may be quoted ("" escapes a quote) and quoted fields may span lines.
+class TaskImportReader {
+
+    enum Format { NDJSON, CSV }
+
+    // A parsed task, or the reason the record starting at that line was rejected
+    record Record(long line, TaskRequest task, String error) {}
+
+    // Longer records are rejected without being buffered, well above the longest valid task
+    static final int MAX_RECORD_LENGTH = 16 * 1024;
+
+    private final Reader reader;
+    private final Format format;
+    private final ObjectReader taskReader;
+    private final StringBuilder field = new StringBuilder();
+
+    private long line = 1;
+    private int pushedBack = -1;
+    private int recordLength;
+    private boolean truncated;
+    private int titleColumn = -1;
+    private int descriptionColumn = -1;
+    private int statusColumn = -1;
+
+    TaskImportReader(Reader reader, Format format, ObjectMapper objectMapper) {
+        this.reader = reader;
+        this.format = format;
+        this.taskReader = objectMapper.readerFor(TaskRequest.class);
+    }
+
+    // Next record, skipping blank lines, or null at the end of the body
+    Record next() throws IOException {
+        if (format == Format.CSV && titleColumn < 0) {
+            readHeader();
+        }
+        while (true) {
+            long start = line;
+            List<String> fields = format == Format.CSV ? readCsvRecord() : readNdjsonLine();
+            if (fields == null) {
+                return null;
+            }
+            if (truncated) {
+                return new Record(start, null, "Record exceeds " + MAX_RECORD_LENGTH + " characters");
+            }
+            if (fields.size() == 1 && fields.get(0).isBlank()) {
+                continue;
+            }
+            return format == Format.CSV ? csvTask(start, fields) : ndjsonTask(start, fields.get(0));
+        }
+    }
+
+    private void readHeader() throws IOException {
+        List<String> header = readCsvRecord();
+        if (header == null) {
+            throw new RuntimeException("CSV import must start with a header line");
+        }
+        for (int i = 0; i < header.size(); i++) {
+            switch (header.get(i).trim().toLowerCase(Locale.ROOT)) {
+                case "title" -> titleColumn = i;
+                case "description" -> descriptionColumn = i;
+                case "status" -> statusColumn = i;
+                default -> throw new RuntimeException("Unknown CSV column: " + header.get(i));
+            }
+        }
+        if (titleColumn < 0) {
+            throw new RuntimeException("CSV header must contain a title column");
+        }
+    }
+
+    private Record ndjsonTask(long start, String json) {
+        try {
+            TaskRequest task = taskReader.readValue(json);
+            return task != null ? new Record(start, task, null) : new Record(start, null, "Expected a task object");
+        } catch (InvalidFormatException e) {
+            String name = e.getPath().isEmpty() ? "value" : e.getPath().get(e.getPath().size() - 1).getFieldName();
+            return new Record(start, null, "Invalid " + name + ": " + e.getValue());
+        } catch (JsonProcessingException e) {
+            return new Record(start, null, "Malformed JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    private Record csvTask(long start, List<String> fields) {
+        String title = column(fields, titleColumn);
+        String description = column(fields, descriptionColumn);
+        String status = column(fields, statusColumn);
+        Task.TaskStatus taskStatus = null;
+        if (status != null && !status.isBlank()) {
+            try {
+                taskStatus = Task.TaskStatus.valueOf(status.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return new Record(start, null, "Invalid status: " + status);
+            }
+        }
+        return new Record(start, new TaskRequest(title, description == null || description.isEmpty()
+                ? null : description, taskStatus), null);
+    }
+
+    private static String column(List<String> fields, int index) {
+        return index >= 0 && index < fields.size() ? fields.get(index) : null;
+    }
+
+    // The whole line as a single field
+    private List<String> readNdjsonLine() throws IOException {
+        resetRecord();
+        int c = read();
+        if (c == -1) {
+            return null;
+        }
+        while (c != -1 && c != '\n') {
+            if (c != '\r') {
+                append(c);
+            }
+            c = read();
+        }
+        return List.of(field.toString());
+    }
+
+    private List<String> readCsvRecord() throws IOException {
+        resetRecord();
+        int c = read();
+        if (c == -1) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    break;
+                }
+                if (c == '"') {
+                    int next = read();
+                    if (next == '"') {
+                        append('"');
+                    } else {
+                        quoted = false;
+                        unread(next);
+                    }
+                } else {
+                    append(c);
+                }
+            } else if (c == -1 || c == '\n') {
+                break;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c != '\r') {
+                append(c);
+            }
+            c = read();
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private void resetRecord() {
+        field.setLength(0);
+        recordLength = 0;
+        truncated = false;
+    }
+
+    private void append(int c) {
+        if (++recordLength <= MAX_RECORD_LENGTH) {
+            field.append((char) c);
+        } else {
+            truncated = true;
+        }
+    }
+
+    private int read() throws IOException {
+        int c;
+        if (pushedBack != -1) {
+            c = pushedBack;
+            pushedBack = -1;
+        } else {
+            c = reader.read();
+        }
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+
+    private void unread(int c) {
+        if (c == '\n') {
+            line--;
+        }
+        pushedBack = c;
+    }
+}
@@ -0,0 +1,77 @@
+package ar.meetus.tasky.service;
+
+import ar.meetus.tasky.dto.TaskResponse;
+import ar.meetus.tasky.metrics.CacheMetrics;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+// Per-user cache of the full task list, bounded by an estimate of the bytes it holds.
+// Concurrent misses for the same user wait for a single load instead of each querying the database.
+@Component
+public class TaskListCache {
+
+    // Rough per-task footprint of a TaskResponse with its Long and String headers, excluding text
+    private static final int TASK_OVERHEAD_BYTES = 120;
+
+    private final Cache<Long, List<TaskResponse>> cache;
+
+    public TaskListCache(@Value("${tasks.cache.max-weight-bytes:33554432}") long maxWeightBytes,
+                         @Value("${tasks.cache.expire-after-access:10m}") Duration expireAfterAccess,
+                         MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher((Long userId, List<TaskResponse> tasks) -> weigh(tasks))
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
+        // Hit ratio, load time and evictions as cache.* meters tagged cache=tasks.list
+        CacheMetrics.monitor(meterRegistry, cache, "tasks.list");
+    }
+
+    public List<TaskResponse> get(Long userId, Supplier<List<TaskResponse>> loader) {
+        // Inside a read-write transaction the query may see uncommitted rows, which must not be cached
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return loader.get();
+        }
+        return cache.get(userId, id -> List.copyOf(loader.get()));
+    }
+
+    public void invalidate(Long userId) {
+        cache.invalidate(userId);
+    }
+
+    // Dropped as soon as the write happens and again once it commits, in case a concurrent
+    // load read the old rows in between
+    @EventListener
+    public void onTaskChanging(TaskChangedEvent event) {
+        invalidate(event.userId());
+    }
+
+    @TransactionalEventListener
+    public void onTaskChanged(TaskChangedEvent event) {
+        invalidate(event.userId());
+    }
+
+    private static int weigh(List<TaskResponse> tasks) {
+        long bytes = 16 + 4L * tasks.size();
+        for (TaskResponse task : tasks) {
+            bytes += TASK_OVERHEAD_BYTES + length(task.getTitle()) + length(task.getDescription());
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+}
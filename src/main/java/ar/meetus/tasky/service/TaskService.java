@@ -1,28 +1,88 @@
 package ar.meetus.tasky.service;
 
+import ar.meetus.tasky.dto.TaskChangesResponse;
+import ar.meetus.tasky.dto.TaskImportError;
+import ar.meetus.tasky.dto.TaskImportResponse;
+import ar.meetus.tasky.dto.TaskPage;
+import ar.meetus.tasky.dto.TaskPatchItem;
 import ar.meetus.tasky.dto.TaskRequest;
 import ar.meetus.tasky.dto.TaskResponse;
 import ar.meetus.tasky.model.Task;
 import ar.meetus.tasky.model.User;
-import ar.meetus.tasky.repository.TaskRepository;
 import ar.meetus.tasky.repository.UserRepository;
+import ar.meetus.tasky.security.JwtPrincipal;
+import ar.meetus.tasky.store.TaskStore;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 @Service
 public class TaskService {
 
     @Autowired
-    private TaskRepository taskRepository;
+    private TaskStore taskStore;
 
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private TaskVersionStore taskVersionStore;
+
+    @Autowired
+    private TaskListCache taskListCache;
+
+    @Autowired
+    private TaskStreamService taskStreamService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Validator validator;
+
+    @Value("${tasks.page.default-size:50}")
+    private int defaultPageSize;
+
+    @Value("${tasks.page.max-size:500}")
+    private int maxPageSize;
+
+    @Value("${tasks.batch.max-size:500}")
+    private int maxBatchSize;
+
+    @Value("${tasks.import.batch-size:500}")
+    private int importBatchSize;
+
+    @Value("${tasks.import.max-errors:1000}")
+    private int maxImportErrors;
+
+    // The list cache and the ETag versions only see this instance's writes. The sharded engine is meant to
+    // run on several instances, so with it lists are always read from the store and carry no ETag
+    @Value("#{'${tasks.store.engine:jpa}' == 'sharded'}")
+    private boolean instanceCachesDisabled;
+
     private User getCurrentUser() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         String email = authentication.getName();
@@ -30,53 +90,229 @@ public class TaskService {
                 .orElseThrow(() -> new RuntimeException("User not found"));
     }
 
+    // User id carried by the authenticated principal, null if it only knows the email
+    private Long getPrincipalUserId() {
+        Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        if (principal instanceof JwtPrincipal jwtPrincipal) {
+            return jwtPrincipal.getId();
+        }
+        if (principal instanceof User user) {
+            return user.getId();
+        }
+        return null;
+    }
+
+    private Long getCurrentUserId() {
+        Long userId = getPrincipalUserId();
+        return userId != null ? userId : getCurrentUser().getId();
+    }
+
     public TaskResponse createTask(TaskRequest request) {
-        User currentUser = getCurrentUser();
+        Long userId = getCurrentUserId();
+        TaskStore.TaskWrite write = taskStore.create(userId, List.of(withDefaults(request)));
+        taskChanged(userId, TaskChangedEvent.Type.CREATED, write.taskIds(), write.version());
+        return write.tasks().get(0);
+    }
 
-        Task task = new Task();
-        task.setTitle(request.getTitle());
-        task.setDescription(request.getDescription());
-        task.setStatus(request.getStatus() != null ? request.getStatus() : Task.TaskStatus.OPEN);
-        task.setUser(currentUser);
+    // All tasks are written at once with a single change version
+    public List<TaskResponse> createTasks(List<TaskRequest> requests) {
+        checkBatchSize(requests.size());
+        Long userId = getCurrentUserId();
+        TaskStore.TaskWrite write = taskStore.create(userId, requests.stream()
+                .map(this::withDefaults)
+                .collect(Collectors.toList()));
+        taskChanged(userId, TaskChangedEvent.Type.CREATED, write.taskIds(), write.version());
+        return write.tasks();
+    }
 
-        Task savedTask = taskRepository.save(task);
-        return new TaskResponse(savedTask);
+    private TaskRequest withDefaults(TaskRequest request) {
+        return new TaskRequest(request.getTitle(), request.getDescription(),
+                request.getStatus() != null ? request.getStatus() : Task.TaskStatus.OPEN);
     }
 
-    public List<TaskResponse> getAllTasks() {
-        User currentUser = getCurrentUser();
-        List<Task> tasks = taskRepository.findByUserId(currentUser.getId());
-        return tasks.stream()
-                .map(TaskResponse::new)
-                .collect(Collectors.toList());
+    // Bulk import from NDJSON or CSV, read a record at a time. Valid tasks are written importBatchSize at a
+    // time, each chunk in its own store write; invalid records are skipped and reported by line
+    public TaskImportResponse importTasks(Reader body, boolean csv) throws IOException {
+        Long userId = getCurrentUserId();
+        long start = System.nanoTime();
+        TaskImportReader reader = new TaskImportReader(new BufferedReader(body, 65536),
+                csv ? TaskImportReader.Format.CSV : TaskImportReader.Format.NDJSON, objectMapper);
+        List<TaskRequest> chunk = new ArrayList<>(importBatchSize);
+        List<TaskImportError> errors = new ArrayList<>();
+        long imported = 0;
+        long failed = 0;
+
+        TaskImportReader.Record record;
+        while ((record = reader.next()) != null) {
+            String error = record.error() != null ? record.error() : validate(record.task());
+            if (error != null) {
+                if (errors.size() < maxImportErrors) {
+                    errors.add(new TaskImportError(record.line(), error));
+                }
+                failed++;
+                continue;
+            }
+            chunk.add(withDefaults(record.task()));
+            if (chunk.size() == importBatchSize) {
+                imported += importChunk(userId, chunk);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            imported += importChunk(userId, chunk);
+        }
+
+        long elapsedNanos = System.nanoTime() - start;
+        return new TaskImportResponse(imported, failed, elapsedNanos / 1_000_000,
+                elapsedNanos > 0 ? imported * 1_000_000_000L / elapsedNanos : 0, errors);
     }
 
-    public TaskResponse updateTask(Long taskId, TaskRequest request) {
-        User currentUser = getCurrentUser();
+    private int importChunk(Long userId, List<TaskRequest> chunk) {
+        TaskStore.TaskWrite write = taskStore.create(userId, List.copyOf(chunk));
+        chunk.clear();
+        taskChanged(userId, TaskChangedEvent.Type.CREATED, write.taskIds(), write.version());
+        return write.taskIds().size();
+    }
+
+    // Same constraints as POST /tasks, all messages of the record joined
+    private String validate(TaskRequest request) {
+        Set<ConstraintViolation<TaskRequest>> violations = validator.validate(request);
+        return violations.isEmpty() ? null : violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
 
-        Task task = taskRepository.findByIdAndUserId(taskId, currentUser.getId())
-                .orElseThrow(() -> new RuntimeException("Task not found or access denied"));
+    // Open an SSE stream of the current user's task changes
+    public SseEmitter subscribeToChanges() {
+        return taskStreamService.subscribe(getCurrentUserId());
+    }
+
+    // ETag of the current user's task list, answered from memory without touching the task store.
+    // Null when the versions cannot see other instances' writes
+    public String getTaskListETag(String variant) {
+        return instanceCachesDisabled ? null : taskVersionStore.etag(getCurrentUserId(), variant);
+    }
 
-        if (request.getTitle() != null) {
-            task.setTitle(request.getTitle());
+    // Served from the per-user cache, a miss loads the list from the task store
+    public List<TaskResponse> getAllTasks() {
+        Long userId = getCurrentUserId();
+        if (instanceCachesDisabled) {
+            return taskStore.findAll(userId);
         }
-        if (request.getDescription() != null) {
-            task.setDescription(request.getDescription());
+        return taskListCache.get(userId, () -> taskStore.findAll(userId));
+    }
+
+    // NDJSON export, one task per line written as it is read from the task store, so memory stays flat
+    // whatever the number of tasks. The user is resolved now, the body is written on an MVC async thread
+    public StreamingResponseBody exportTasks(boolean gzip) {
+        Long userId = getCurrentUserId();
+        return outputStream -> {
+            // Sync flush so the first line reaches the client before the deflater buffer fills up
+            GZIPOutputStream gzipStream = gzip ? new GZIPOutputStream(outputStream, 8192, true) : null;
+            try (JsonGenerator generator = objectMapper.getFactory()
+                    .createGenerator(gzip ? gzipStream : outputStream)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+                int[] written = {0};
+                taskStore.export(userId, task -> {
+                    try {
+                        generator.writeObject(task);
+                        generator.writeRaw('\n');
+                        if (++written[0] == 1) {
+                            generator.flush();
+                        }
+                    } catch (IOException e) {
+                        // Usually the client went away, ends the export and releases the store's cursor
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (gzipStream != null) {
+                gzipStream.finish();
+            }
+        };
+    }
+
+    // Delta sync: tasks written and ids deleted after the client's version, plus the new high-water mark
+    public TaskChangesResponse getChangesSince(long since) {
+        if (since < 0) {
+            throw new RuntimeException("Since must not be negative");
         }
-        if (request.getStatus() != null) {
-            task.setStatus(request.getStatus());
+        return taskStore.findChangesSince(getCurrentUserId(), since);
+    }
+
+    // Keyset pagination on task id, cost stays flat no matter how deep the page is
+    public TaskPage getTaskPage(Task.TaskStatus status, Long cursor, Integer limit, boolean descending) {
+        Long userId = getCurrentUserId();
+        int pageSize = limit != null ? limit : defaultPageSize;
+        if (pageSize < 1 || pageSize > maxPageSize) {
+            throw new RuntimeException("Limit must be between 1 and " + maxPageSize);
         }
 
-        Task updatedTask = taskRepository.save(task);
-        return new TaskResponse(updatedTask);
+        // Fetch one extra row to know whether another page follows
+        List<TaskResponse> tasks = taskStore.findPage(userId, status, cursor, descending, pageSize + 1);
+
+        boolean hasMore = tasks.size() > pageSize;
+        List<TaskResponse> items = hasMore ? tasks.subList(0, pageSize) : tasks;
+        Long nextCursor = hasMore ? items.get(items.size() - 1).getId() : null;
+        return new TaskPage(items, nextCursor);
     }
 
-    public void deleteTask(Long taskId) {
-        User currentUser = getCurrentUser();
+    public TaskResponse updateTask(Long taskId, TaskRequest request) {
+        Long userId = getCurrentUserId();
+        TaskStore.TaskWrite write = taskStore.update(userId, List.of(
+                new TaskPatchItem(taskId, request.getTitle(), request.getDescription(), request.getStatus())));
+        taskChanged(userId, TaskChangedEvent.Type.UPDATED, write.taskIds(), write.version());
+        return write.tasks().get(0);
+    }
+
+    // Applies only the fields present in the request, without reading the task back
+    public void patchTask(Long taskId, TaskRequest request) {
+        Long userId = getCurrentUserId();
+        long version = taskStore.patch(userId, taskId, request);
+        taskChanged(userId, TaskChangedEvent.Type.UPDATED, List.of(taskId), version);
+    }
+
+    // Nothing is written unless every task in the batch exists and is owned
+    public List<TaskResponse> patchTasks(List<TaskPatchItem> items) {
+        checkBatchSize(items.size());
+        Set<Long> ids = new HashSet<>();
+        for (TaskPatchItem item : items) {
+            if (!ids.add(item.getId())) {
+                throw new RuntimeException("Task " + item.getId() + " appears more than once in the batch");
+            }
+        }
+
+        Long userId = getCurrentUserId();
+        TaskStore.TaskWrite write = taskStore.update(userId, items);
+        taskChanged(userId, TaskChangedEvent.Type.UPDATED, write.taskIds(), write.version());
+        return write.tasks();
+    }
 
-        Task task = taskRepository.findByIdAndUserId(taskId, currentUser.getId())
-                .orElseThrow(() -> new RuntimeException("Task not found or access denied"));
+    // All or nothing, like patchTasks
+    public int deleteTasks(List<Long> taskIds) {
+        checkBatchSize(taskIds.size());
+        Long userId = getCurrentUserId();
+        TaskStore.TaskWrite write = taskStore.delete(userId, taskIds);
+        taskChanged(userId, TaskChangedEvent.Type.DELETED, write.taskIds(), write.version());
+        return write.taskIds().size();
+    }
+
+    private void checkBatchSize(int size) {
+        if (size > maxBatchSize) {
+            throw new RuntimeException("A batch can contain at most " + maxBatchSize + " operations");
+        }
+    }
+
+    public void deleteTask(Long taskId) {
+        Long userId = getCurrentUserId();
+        TaskStore.TaskWrite write = taskStore.delete(userId, List.of(taskId));
+        taskChanged(userId, TaskChangedEvent.Type.DELETED, write.taskIds(), write.version());
+    }
 
-        taskRepository.delete(task);
+    // Listeners run after commit, or right away when there is no transaction
+    private void taskChanged(Long userId, TaskChangedEvent.Type type, List<Long> taskIds, long version) {
+        eventPublisher.publishEvent(new TaskChangedEvent(userId, type, taskIds, version));
     }
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+package ar.meetus.tasky.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Per-user task set version, bumped after every committed write and used as the GET /tasks ETag.
+// Versions live in a bounded cache; every entry gets a generation of its own when it is created, so tags
+// issued before a restart or before the user was evicted never match again.
+@Component
+public class TaskVersionStore {
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong generations = new AtomicLong();
+    private final Cache<Long, Version> versions;
+
+    public TaskVersionStore(@Value("${tasks.etag.max-users:100000}") long maxUsers) {
+        this.versions = Caffeine.newBuilder().maximumSize(maxUsers).build();
+    }
+
+    // Strong ETag for the user's task set; the variant separates differently filtered or paged views.
+    // The user id is part of the tag, so a tag cached for one account never matches another's list
+    public String etag(Long userId, String variant) {
+        Version version = version(userId);
+        String tag = epoch + "-" + Long.toString(userId, 36) + "-" + version.generation + "-" + version.count.get();
+        if (variant != null && !variant.isEmpty()) {
+            tag += "-" + Integer.toHexString(variant.hashCode());
+        }
+        return "\"" + tag + "\"";
+    }
+
+    // Bumped only once the write is committed, so a reader never pairs a new version with old rows
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTaskChanged(TaskChangedEvent event) {
+        version(event.userId()).count.incrementAndGet();
+    }
+
+    private Version version(Long userId) {
+        return versions.get(userId, id -> new Version(Long.toString(generations.incrementAndGet(), 36)));
+    }
+
+    private static final class Version {
+        private final String generation;
+        private final AtomicLong count = new AtomicLong();
+
+        private Version(String generation) {
+            this.generation = generation;
+        }
+    }
+}
@@ -4,12 +4,15 @@ import ar.meetus.tasky.model.User;
 import ar.meetus.tasky.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.util.Optional;
+
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
 
     @Autowired
     private UserRepository userRepository;
@@ -21,4 +24,18 @@ public class UserDetailsServiceImpl implements UserDetailsService {
 
         return user;
     }
+
+    // Called after a successful login when the stored hash uses an outdated bcrypt strength
+    @Override
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        // Loaded by id, not through the user cache: the cached instance is shared and must not be mutated.
+        // Saving evicts the cached entry
+        Optional<User> stored = userDetails instanceof User cached && cached.getId() != null
+                ? userRepository.findById(cached.getId())
+                : userRepository.findByEmail(userDetails.getUsername());
+        User user = stored
+                .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + userDetails.getUsername()));
+        user.setPassword(newPassword);
+        return userRepository.save(user);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,226 @@
+package ar.meetus.tasky.store;
+
+import ar.meetus.tasky.dto.TaskChangesResponse;
+import ar.meetus.tasky.dto.TaskPatchItem;
+import ar.meetus.tasky.dto.TaskRequest;
+import ar.meetus.tasky.dto.TaskResponse;
+import ar.meetus.tasky.exception.ResourceNotFoundException;
+import ar.meetus.tasky.model.Task;
+import ar.meetus.tasky.model.TaskTombstone;
+import ar.meetus.tasky.model.User;
+import ar.meetus.tasky.repository.TaskRepository;
+import ar.meetus.tasky.repository.TaskTombstoneRepository;
+import ar.meetus.tasky.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Tasks in the relational database through Spring Data JPA, the default engine
+@Component
+@ConditionalOnProperty(name = "tasks.store.engine", havingValue = "jpa", matchIfMissing = true)
+public class JpaTaskStore implements TaskStore {
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TaskTombstoneRepository taskTombstoneRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Deleted tasks are reported to syncs for this long, clients that sync less often start over
+    @Value("${tasks.tombstones.retention:30d}")
+    private Duration tombstoneRetention;
+
+    // Allocates the next change version of the user's task set, call it inside the write transaction
+    private long nextVersion(Long userId) {
+        return userRepository.incrementAndGetTaskVersion(userId);
+    }
+
+    // All tasks are inserted in one transaction, Hibernate sends them as JDBC batches.
+    // A reference proxy is enough to set the owner's foreign key
+    @Override
+    @Transactional
+    public TaskWrite create(Long userId, List<TaskRequest> requests) {
+        User owner = userRepository.getReferenceById(userId);
+        long version = nextVersion(userId);
+        Instant now = Instant.now();
+
+        List<Task> tasks = requests.stream()
+                .map(request -> {
+                    Task task = new Task(request.getTitle(), request.getDescription(), owner);
+                    task.setStatus(request.getStatus());
+                    task.setChangeVersion(version);
+                    task.setUpdatedAt(now);
+                    return task;
+                })
+                .collect(Collectors.toList());
+        TaskWrite write = TaskWrite.of(version, taskRepository.saveAll(tasks).stream()
+                .map(TaskResponse::new)
+                .collect(Collectors.toList()));
+        // With open-in-view the persistence context lives as long as the request, flush and detach the
+        // new tasks so a bulk import calling this once per chunk does not accumulate them
+        entityManager.flush();
+        entityManager.clear();
+        return write;
+    }
+
+    // One SELECT for all owned tasks, the UPDATEs are flushed as JDBC batches on commit
+    @Override
+    @Transactional
+    public TaskWrite update(Long userId, List<TaskPatchItem> items) {
+        Set<Long> ids = items.stream().map(TaskPatchItem::getId).collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<Long, Task> tasksById = taskRepository.findByUserIdAndIdIn(userId, ids).stream()
+                .collect(Collectors.toMap(Task::getId, task -> task));
+        if (tasksById.size() != ids.size()) {
+            Set<Long> missing = new HashSet<>(ids);
+            missing.removeAll(tasksById.keySet());
+            throw ids.size() == 1
+                    ? new ResourceNotFoundException("Task not found or access denied")
+                    : new ResourceNotFoundException("Tasks not found or access denied: " + missing);
+        }
+
+        long version = nextVersion(userId);
+        Instant now = Instant.now();
+        return TaskWrite.of(version, items.stream()
+                .map(item -> {
+                    Task task = tasksById.get(item.getId());
+                    task.setChangeVersion(version);
+                    task.setUpdatedAt(now);
+                    if (item.getTitle() != null) {
+                        task.setTitle(item.getTitle());
+                    }
+                    if (item.getDescription() != null) {
+                        task.setDescription(item.getDescription());
+                    }
+                    if (item.getStatus() != null) {
+                        task.setStatus(item.getStatus());
+                    }
+                    return new TaskResponse(task);
+                })
+                .collect(Collectors.toList()));
+    }
+
+    // Single UPDATE touching only the fields present in the request
+    @Override
+    @Transactional
+    public long patch(Long userId, Long taskId, TaskRequest changes) {
+        long version = nextVersion(userId);
+        int updated = taskRepository.patchByIdAndUserId(taskId, userId,
+                changes.getTitle(), changes.getDescription(), changes.getStatus(), version, Instant.now());
+        if (updated == 0) {
+            throw new ResourceNotFoundException("Task not found or access denied");
+        }
+        return version;
+    }
+
+    // Single DELETE for the whole batch, rolled back unless every task exists and is owned
+    @Override
+    @Transactional
+    public TaskWrite delete(Long userId, Collection<Long> taskIds) {
+        Set<Long> ids = new LinkedHashSet<>(taskIds);
+        long version = nextVersion(userId);
+        if (ids.size() == 1) {
+            if (taskRepository.deleteByIdAndUserId(ids.iterator().next(), userId) == 0) {
+                throw new ResourceNotFoundException("Task not found or access denied");
+            }
+        } else if (taskRepository.deleteByUserIdAndIdIn(userId, ids) != ids.size()) {
+            throw new ResourceNotFoundException("Tasks not found or access denied");
+        }
+        Instant now = Instant.now();
+        taskTombstoneRepository.saveAll(ids.stream()
+                .map(id -> new TaskTombstone(id, userId, version, now))
+                .collect(Collectors.toList()));
+        return new TaskWrite(version, List.copyOf(ids), List.of());
+    }
+
+    // Projected query in a read-only transaction, Hibernate keeps no entity snapshots and read/write
+    // routing sends it to the replica
+    @Override
+    @Transactional(readOnly = true)
+    public List<TaskResponse> findAll(Long userId) {
+        return taskRepository.findResponsesByUserId(userId);
+    }
+
+    // The cursor stays open for the whole export, a read-only transaction so Hibernate skips flushing
+    @Override
+    @Transactional(readOnly = true)
+    public void export(Long userId, Consumer<TaskResponse> sink) {
+        try (Stream<TaskResponse> tasks = taskRepository.streamResponsesByUserId(userId)) {
+            tasks.forEach(sink);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<TaskResponse> findPage(Long userId, Task.TaskStatus status, Long cursor, boolean descending, int limit) {
+        Limit fetchLimit = Limit.of(limit);
+        if (descending) {
+            long before = cursor != null ? cursor : Long.MAX_VALUE;
+            return status != null
+                    ? taskRepository.findResponsesBefore(userId, status, before, fetchLimit)
+                    : taskRepository.findResponsesBefore(userId, before, fetchLimit);
+        }
+        long after = cursor != null ? cursor : 0L;
+        return status != null
+                ? taskRepository.findResponsesAfter(userId, status, after, fetchLimit)
+                : taskRepository.findResponsesAfter(userId, after, fetchLimit);
+    }
+
+    // The high-water mark is read first and bounds both queries, writes committed meanwhile go to the next sync
+    @Override
+    @Transactional(readOnly = true)
+    public TaskChangesResponse findChangesSince(Long userId, long since) {
+        long version = userRepository.findTaskVersion(userId);
+        if (since == version) {
+            return new TaskChangesResponse(version, List.of(), List.of());
+        }
+        // A version ahead of ours was not issued by this database (e.g. it was reset), and deletes before the
+        // horizon are forgotten: send everything and have the client drop what it has
+        if (since > version || since > 0 && since < userRepository.findTombstoneHorizon(userId)) {
+            return new TaskChangesResponse(version,
+                    taskRepository.findResponsesChangedBetween(userId, 0L, version), List.of(), true);
+        }
+        return new TaskChangesResponse(version,
+                taskRepository.findResponsesChangedBetween(userId, since, version),
+                taskTombstoneRepository.findTaskIdsDeletedBetween(userId, since, version));
+    }
+
+    @Scheduled(initialDelayString = "${tasks.tombstones.purge-interval-ms:3600000}",
+            fixedDelayString = "${tasks.tombstones.purge-interval-ms:3600000}")
+    @Transactional
+    public void purgeTombstones() {
+        purgeTombstonesDeletedBefore(Instant.now().minus(tombstoneRetention));
+    }
+
+    // Deletes the tombstones older than the cutoff and raises the owners' horizons past them in the same
+    // transaction, so a sync never misses a purged delete without being told to start over
+    @Override
+    @Transactional
+    public int purgeTombstonesDeletedBefore(Instant before) {
+        userRepository.raiseTombstoneHorizons(before);
+        return taskTombstoneRepository.deleteDeletedBefore(before);
+    }
+}
@@ -0,0 +1,660 @@
+package ar.meetus.tasky.store;
+
+import ar.meetus.tasky.dto.TaskChangesResponse;
+import ar.meetus.tasky.dto.TaskPatchItem;
+import ar.meetus.tasky.dto.TaskRequest;
+import ar.meetus.tasky.dto.TaskResponse;
+import ar.meetus.tasky.exception.ResourceNotFoundException;
+import ar.meetus.tasky.model.Task;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+// Tasks held in per-user maps in memory. Every write is appended to TaskLog and only applied to the maps
+// once the batched fsync covering it completes, so readers never see a write the log might not keep;
+// periodic snapshots bound the log that has to be replayed on startup. Writes of one user are serialized,
+// reads only wait while a durable write is applied, different users never contend. Tombstones are kept for
+// tasks.tombstones.retention, like the JPA engine's.
+@Component
+@ConditionalOnProperty(name = "tasks.store.engine", havingValue = "memory")
+public class MemoryTaskStore implements TaskStore {
+
+    private static final int SNAPSHOT_MAGIC = 0x54534B32;
+    // Snapshots written before tombstones had a deletion time and users a horizon
+    private static final int SNAPSHOT_MAGIC_V1 = 0x54534B31;
+    private static final byte UPSERT = 1;
+    private static final byte DELETE = 2;
+    private static final int EXPORT_PAGE_SIZE = 1000;
+
+    private final Path directory;
+    private final boolean fsync;
+    private final Duration tombstoneRetention;
+    private final TaskLog log;
+    private final ConcurrentHashMap<Long, UserTasks> users = new ConcurrentHashMap<>();
+    private final AtomicLong lastTaskId = new AtomicLong();
+    private final ReentrantLock checkpointLock = new ReentrantLock();
+
+    public MemoryTaskStore(@Value("${tasks.store.memory.dir:data/tasks}") Path directory,
+                           @Value("${tasks.store.memory.fsync:true}") boolean fsync,
+                           @Value("${tasks.store.memory.log-queue-capacity:4096}") int logQueueCapacity,
+                           @Value("${tasks.tombstones.retention:30d}") Duration tombstoneRetention) {
+        this.directory = directory;
+        this.fsync = fsync;
+        this.tombstoneRetention = tombstoneRetention;
+        this.log = new TaskLog(directory, fsync, logQueueCapacity);
+    }
+
+    // Latest snapshot plus the log segments written since it was taken
+    @PostConstruct
+    public void recover() throws IOException {
+        Files.createDirectories(directory);
+        long firstSegment = 0;
+        Path snapshot = latestSnapshot();
+        if (snapshot != null) {
+            firstSegment = readSnapshot(snapshot);
+        }
+        log.replay(firstSegment, this::replay);
+        log.start();
+    }
+
+    // Rotates the log, snapshots every user and drops the segments the snapshot covers. Records of the
+    // new segment may be in the snapshot too, replay skips versions a user already has.
+    @Scheduled(initialDelayString = "${tasks.store.memory.snapshot-interval-ms:300000}",
+            fixedDelayString = "${tasks.store.memory.snapshot-interval-ms:300000}")
+    public void checkpoint() {
+        checkpointLock.lock();
+        try {
+            try {
+                long segment = log.rotate();
+                Path snapshot = directory.resolve("snapshot-" + segment + ".bin");
+                Path temporary = directory.resolve("snapshot-" + segment + ".tmp");
+                writeSnapshot(temporary, segment);
+                Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                syncDirectory();
+                for (Path old : snapshots()) {
+                    if (!old.equals(snapshot)) {
+                        Files.deleteIfExists(old);
+                    }
+                }
+                log.deleteSegmentsBefore(segment);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Task store checkpoint failed", e);
+            }
+        } finally {
+            checkpointLock.unlock();
+        }
+    }
+
+    @Scheduled(initialDelayString = "${tasks.tombstones.purge-interval-ms:3600000}",
+            fixedDelayString = "${tasks.tombstones.purge-interval-ms:3600000}")
+    public void purgeTombstones() {
+        purgeTombstonesDeletedBefore(Instant.now().minus(tombstoneRetention));
+    }
+
+    // Drops the tombstones older than the cutoff and raises each user's horizon past them. Not logged: after
+    // a crash the tombstones of the last snapshot come back and are purged again on the next run
+    @Override
+    public int purgeTombstonesDeletedBefore(Instant before) {
+        long cutoff = before.toEpochMilli();
+        int purged = 0;
+        for (UserTasks user : users.values()) {
+            user.lock.lock();
+            try {
+                purged += user.purge(cutoff);
+            } finally {
+                user.lock.unlock();
+            }
+        }
+        return purged;
+    }
+
+    // A snapshot on shutdown makes the next start a plain snapshot load
+    @PreDestroy
+    public void close() {
+        try {
+            checkpoint();
+        } finally {
+            log.close();
+        }
+    }
+
+    @Override
+    public TaskWrite create(Long userId, List<TaskRequest> requests) {
+        UserTasks user = users.computeIfAbsent(userId, id -> new UserTasks());
+        user.writes.lock();
+        try {
+            long version = user.version + 1;
+            long now = System.currentTimeMillis();
+            List<StoredTask> created = new ArrayList<>(requests.size());
+            for (TaskRequest request : requests) {
+                created.add(new StoredTask(lastTaskId.incrementAndGet(), request.getTitle(), request.getDescription(),
+                        request.getStatus(), version, now));
+            }
+            awaitDurable(log.append(upsertRecord(userId, version, now, created)));
+            user.apply(() -> user.upsert(version, created));
+            return TaskWrite.of(version, created.stream().map(StoredTask::toResponse).toList());
+        } finally {
+            user.writes.unlock();
+        }
+    }
+
+    @Override
+    public TaskWrite update(Long userId, List<TaskPatchItem> items) {
+        UserTasks user = users.get(userId);
+        Set<Long> ids = new LinkedHashSet<>();
+        items.forEach(item -> ids.add(item.getId()));
+        if (user == null) {
+            throw notFound(ids, ids);
+        }
+        user.writes.lock();
+        try {
+            if (!user.tasks.keySet().containsAll(ids)) {
+                throw notFound(ids, user.tasks.keySet());
+            }
+            long version = user.version + 1;
+            long now = System.currentTimeMillis();
+            List<StoredTask> updated = new ArrayList<>(items.size());
+            for (TaskPatchItem item : items) {
+                updated.add(user.tasks.get(item.getId()).patch(item, version, now));
+            }
+            awaitDurable(log.append(upsertRecord(userId, version, now, updated)));
+            user.apply(() -> user.upsert(version, updated));
+            return TaskWrite.of(version, updated.stream().map(StoredTask::toResponse).toList());
+        } finally {
+            user.writes.unlock();
+        }
+    }
+
+    @Override
+    public long patch(Long userId, Long taskId, TaskRequest changes) {
+        TaskPatchItem item = new TaskPatchItem(taskId, changes.getTitle(), changes.getDescription(), changes.getStatus());
+        return update(userId, List.of(item)).version();
+    }
+
+    @Override
+    public TaskWrite delete(Long userId, Collection<Long> taskIds) {
+        Set<Long> ids = new LinkedHashSet<>(taskIds);
+        UserTasks user = users.get(userId);
+        if (user == null) {
+            throw notDeleted(ids);
+        }
+        user.writes.lock();
+        try {
+            if (!user.tasks.keySet().containsAll(ids)) {
+                throw notDeleted(ids);
+            }
+            long version = user.version + 1;
+            long now = System.currentTimeMillis();
+            awaitDurable(log.append(deleteRecord(userId, version, now, ids)));
+            user.apply(() -> user.delete(version, now, ids));
+            return new TaskWrite(version, List.copyOf(ids), List.of());
+        } finally {
+            user.writes.unlock();
+        }
+    }
+
+    @Override
+    public List<TaskResponse> findAll(Long userId) {
+        UserTasks user = users.get(userId);
+        if (user == null) {
+            return List.of();
+        }
+        user.lock.lock();
+        try {
+            List<TaskResponse> tasks = new ArrayList<>(user.tasks.size());
+            for (StoredTask task : user.tasks.values()) {
+                tasks.add(task.toResponse());
+            }
+            return tasks;
+        } finally {
+            user.lock.unlock();
+        }
+    }
+
+    // Copied out a page at a time, the user's lock is never held while the sink writes to a slow client
+    @Override
+    public void export(Long userId, Consumer<TaskResponse> sink) {
+        Long cursor = null;
+        List<TaskResponse> page;
+        do {
+            page = findPage(userId, null, cursor, false, EXPORT_PAGE_SIZE);
+            page.forEach(sink);
+            cursor = page.isEmpty() ? cursor : page.get(page.size() - 1).getId();
+        } while (page.size() == EXPORT_PAGE_SIZE);
+    }
+
+    @Override
+    public List<TaskResponse> findPage(Long userId, Task.TaskStatus status, Long cursor, boolean descending, int limit) {
+        UserTasks user = users.get(userId);
+        if (user == null) {
+            return List.of();
+        }
+        user.lock.lock();
+        try {
+            NavigableMap<Long, StoredTask> range = descending
+                    ? user.tasks.headMap(cursor != null ? cursor : Long.MAX_VALUE, false).descendingMap()
+                    : user.tasks.tailMap(cursor != null ? cursor : 0L, false);
+            List<TaskResponse> page = new ArrayList<>(Math.min(limit, range.size()));
+            for (StoredTask task : range.values()) {
+                if (page.size() == limit) {
+                    break;
+                }
+                if (status == null || task.status() == status) {
+                    page.add(task.toResponse());
+                }
+            }
+            return page;
+        } finally {
+            user.lock.unlock();
+        }
+    }
+
+    @Override
+    public TaskChangesResponse findChangesSince(Long userId, long since) {
+        UserTasks user = users.get(userId);
+        if (user == null) {
+            return new TaskChangesResponse(0L, List.of(), List.of(), since > 0);
+        }
+        user.lock.lock();
+        try {
+            long version = user.version;
+            if (since == version) {
+                return new TaskChangesResponse(version, List.of(), List.of());
+            }
+            // A version ahead of ours was not issued by this store (e.g. its files were removed), and deletes
+            // before the horizon are forgotten: send everything and have the client drop what it has
+            boolean reset = since > version || since > 0 && since < user.horizon;
+            long from = reset ? 0L : since;
+            List<TaskResponse> changed = user.tasks.values().stream()
+                    .filter(task -> task.changeVersion() > from)
+                    .sorted(Comparator.comparingLong(StoredTask::changeVersion).thenComparingLong(StoredTask::id))
+                    .map(StoredTask::toResponse)
+                    .toList();
+            // Tombstones are appended in version order, the newest are at the end
+            List<Long> deleted = new ArrayList<>();
+            if (!reset) {
+                for (int i = user.tombstones.size() - 1; i >= 0 && user.tombstones.get(i).version() > from; i--) {
+                    deleted.add(user.tombstones.get(i).taskId());
+                }
+                Collections.reverse(deleted);
+            }
+            return new TaskChangesResponse(version, changed, deleted, reset);
+        } finally {
+            user.lock.unlock();
+        }
+    }
+
+    // Number of tasks held, for tests and benchmarks
+    public long size() {
+        return users.values().stream().mapToLong(user -> {
+            user.lock.lock();
+            try {
+                return user.tasks.size();
+            } finally {
+                user.lock.unlock();
+            }
+        }).sum();
+    }
+
+    // Throws if the log rejected or failed the record, before the write is applied. With fsync off a write
+    // is applied as soon as the log accepted it
+    private void awaitDurable(CompletableFuture<Void> durable) {
+        if (!fsync) {
+            return;
+        }
+        try {
+            durable.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private static ResourceNotFoundException notFound(Set<Long> ids, Set<Long> existing) {
+        if (ids.size() == 1) {
+            return new ResourceNotFoundException("Task not found or access denied");
+        }
+        Set<Long> missing = new HashSet<>(ids);
+        missing.removeAll(existing);
+        return new ResourceNotFoundException("Tasks not found or access denied: " + missing);
+    }
+
+    private static ResourceNotFoundException notDeleted(Set<Long> ids) {
+        return new ResourceNotFoundException(ids.size() == 1
+                ? "Task not found or access denied"
+                : "Tasks not found or access denied");
+    }
+
+    // Log records: [type][userId][version][timestamp][count] followed by full tasks or task ids
+
+    private static byte[] upsertRecord(Long userId, long version, long timestamp, List<StoredTask> tasks) {
+        return record(out -> {
+            writeHeader(out, UPSERT, userId, version, timestamp, tasks.size());
+            for (StoredTask task : tasks) {
+                writeTask(out, task);
+            }
+        });
+    }
+
+    private static byte[] deleteRecord(Long userId, long version, long timestamp, Set<Long> ids) {
+        return record(out -> {
+            writeHeader(out, DELETE, userId, version, timestamp, ids.size());
+            for (Long id : ids) {
+                out.writeLong(id);
+            }
+        });
+    }
+
+    private static void writeHeader(DataOutput out, byte type, Long userId, long version, long timestamp, int count)
+            throws IOException {
+        out.writeByte(type);
+        out.writeLong(userId);
+        out.writeLong(version);
+        out.writeLong(timestamp);
+        out.writeInt(count);
+    }
+
+    private void replay(byte[] record) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+            byte type = in.readByte();
+            long userId = in.readLong();
+            long version = in.readLong();
+            long timestamp = in.readLong();
+            int count = in.readInt();
+            UserTasks user = users.computeIfAbsent(userId, id -> new UserTasks());
+            // Already part of the snapshot
+            if (version <= user.version) {
+                return;
+            }
+            if (type == UPSERT) {
+                List<StoredTask> tasks = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    StoredTask task = readTask(in);
+                    lastTaskId.accumulateAndGet(task.id(), Math::max);
+                    tasks.add(task);
+                }
+                user.upsert(version, tasks);
+            } else {
+                Set<Long> ids = new LinkedHashSet<>();
+                for (int i = 0; i < count; i++) {
+                    ids.add(in.readLong());
+                }
+                user.delete(version, timestamp, ids);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt task log record", e);
+        }
+    }
+
+    // Snapshot: [magic][first segment] then per user [1][userId][version][horizon][tasks][tombstones],
+    // [0][last task id][crc]
+
+    private void writeSnapshot(Path path, long segment) throws IOException {
+        try (FileOutputStream file = new FileOutputStream(path.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, 64 * 1024), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(segment);
+            for (Map.Entry<Long, UserTasks> entry : users.entrySet()) {
+                UserTasks user = entry.getValue();
+                long version;
+                long horizon;
+                List<StoredTask> tasks;
+                List<Tombstone> tombstones;
+                // Copied under the user's locks, written without holding them. Taking the writes lock waits for a
+                // write whose record is in a rotated segment but that is not applied yet
+                user.writes.lock();
+                user.lock.lock();
+                try {
+                    version = user.version;
+                    horizon = user.horizon;
+                    tasks = new ArrayList<>(user.tasks.values());
+                    tombstones = new ArrayList<>(user.tombstones);
+                } finally {
+                    user.lock.unlock();
+                    user.writes.unlock();
+                }
+                out.writeBoolean(true);
+                out.writeLong(entry.getKey());
+                out.writeLong(version);
+                out.writeLong(horizon);
+                out.writeInt(tasks.size());
+                for (StoredTask task : tasks) {
+                    writeTask(out, task);
+                }
+                out.writeInt(tombstones.size());
+                for (Tombstone tombstone : tombstones) {
+                    out.writeLong(tombstone.taskId());
+                    out.writeLong(tombstone.version());
+                    out.writeLong(tombstone.deletedAt());
+                }
+            }
+            out.writeBoolean(false);
+            // Read after copying the users, so it covers every task id in the snapshot
+            out.writeLong(lastTaskId.get());
+            out.flush();
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+            if (fsync) {
+                file.getChannel().force(false);
+            }
+        }
+    }
+
+    // Returns the first log segment the snapshot does not cover
+    private long readSnapshot(Path path) throws IOException {
+        try (CheckedInputStream checked = new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(path), 64 * 1024), new CRC32())) {
+            DataInputStream in = new DataInputStream(checked);
+            int magic = in.readInt();
+            if (magic != SNAPSHOT_MAGIC && magic != SNAPSHOT_MAGIC_V1) {
+                throw new IOException("Not a task snapshot: " + path);
+            }
+            boolean legacy = magic == SNAPSHOT_MAGIC_V1;
+            // Tombstones of an old snapshot are kept for the full retention from now on
+            long loadedAt = System.currentTimeMillis();
+            long segment = in.readLong();
+            while (in.readBoolean()) {
+                long userId = in.readLong();
+                UserTasks user = new UserTasks();
+                user.version = in.readLong();
+                user.horizon = legacy ? 0L : in.readLong();
+                int taskCount = in.readInt();
+                for (int i = 0; i < taskCount; i++) {
+                    StoredTask task = readTask(in);
+                    user.tasks.put(task.id(), task);
+                }
+                int tombstoneCount = in.readInt();
+                for (int i = 0; i < tombstoneCount; i++) {
+                    user.tombstones.add(new Tombstone(in.readLong(), in.readLong(), legacy ? loadedAt : in.readLong()));
+                }
+                users.put(userId, user);
+            }
+            lastTaskId.set(in.readLong());
+            long expected = checked.getChecksum().getValue();
+            if (in.readLong() != expected) {
+                throw new IOException("Task snapshot checksum mismatch: " + path);
+            }
+            return segment;
+        }
+    }
+
+    private Path latestSnapshot() throws IOException {
+        return snapshots().stream()
+                .max(Comparator.comparingLong(MemoryTaskStore::snapshotSegment))
+                .orElse(null);
+    }
+
+    private List<Path> snapshots() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith("snapshot-") && name.endsWith(".bin");
+            }).toList();
+        }
+    }
+
+    private static long snapshotSegment(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring("snapshot-".length(), name.length() - ".bin".length()));
+    }
+
+    private void syncDirectory() {
+        if (!fsync) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported on every platform, the snapshot file itself was synced
+        }
+    }
+
+    private static void writeTask(DataOutput out, StoredTask task) throws IOException {
+        out.writeLong(task.id());
+        out.writeUTF(task.title());
+        out.writeBoolean(task.description() != null);
+        if (task.description() != null) {
+            out.writeUTF(task.description());
+        }
+        out.writeUTF(task.status().name());
+        out.writeLong(task.changeVersion());
+        out.writeLong(task.updatedAt());
+    }
+
+    private static StoredTask readTask(DataInput in) throws IOException {
+        long id = in.readLong();
+        String title = in.readUTF();
+        String description = in.readBoolean() ? in.readUTF() : null;
+        return new StoredTask(id, title, description, Task.TaskStatus.valueOf(in.readUTF()), in.readLong(), in.readLong());
+    }
+
+    private static byte[] record(RecordWriter writer) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            writer.write(out);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    // Changed only while holding both locks: writes serializes the user's writers across the wait for
+    // durability, lock guards the state against readers and is only held while a write is applied
+    private static final class UserTasks {
+        private final ReentrantLock writes = new ReentrantLock();
+        private final ReentrantLock lock = new ReentrantLock();
+        private long version;
+        // Highest version whose tombstones were purged, syncs from an older version must start over
+        private long horizon;
+        private final TreeMap<Long, StoredTask> tasks = new TreeMap<>();
+        private final List<Tombstone> tombstones = new ArrayList<>();
+
+        private void apply(Runnable change) {
+            lock.lock();
+            try {
+                change.run();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void upsert(long newVersion, List<StoredTask> written) {
+            for (StoredTask task : written) {
+                tasks.put(task.id(), task);
+            }
+            version = newVersion;
+        }
+
+        private void delete(long newVersion, long deletedAt, Set<Long> ids) {
+            for (Long id : ids) {
+                tasks.remove(id);
+                tombstones.add(new Tombstone(id, newVersion, deletedAt));
+            }
+            version = newVersion;
+        }
+
+        // Tombstones are in version order, the oldest are at the start
+        private int purge(long cutoff) {
+            int count = 0;
+            while (count < tombstones.size() && tombstones.get(count).deletedAt() < cutoff) {
+                count++;
+            }
+            if (count > 0) {
+                horizon = Math.max(horizon, tombstones.get(count - 1).version());
+                tombstones.subList(0, count).clear();
+            }
+            return count;
+        }
+    }
+
+    // Immutable, an update replaces the whole entry
+    private record StoredTask(long id, String title, String description, Task.TaskStatus status,
+                              long changeVersion, long updatedAt) {
+
+        StoredTask patch(TaskRequest changes, long version, long now) {
+            return new StoredTask(id,
+                    changes.getTitle() != null ? changes.getTitle() : title,
+                    changes.getDescription() != null ? changes.getDescription() : description,
+                    changes.getStatus() != null ? changes.getStatus() : status,
+                    version, now);
+        }
+
+        TaskResponse toResponse() {
+            return new TaskResponse(id, title, description, status);
+        }
+    }
+
+    private record Tombstone(long taskId, long version, long deletedAt) {
+    }
+}
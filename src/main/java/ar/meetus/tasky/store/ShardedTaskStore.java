@@ -0,0 +1,324 @@
+package ar.meetus.tasky.store;
+
+import ar.meetus.tasky.dto.TaskChangesResponse;
+import ar.meetus.tasky.dto.TaskPatchItem;
+import ar.meetus.tasky.dto.TaskRequest;
+import ar.meetus.tasky.dto.TaskResponse;
+import ar.meetus.tasky.model.Task;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.support.DataAccessUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// Tasks spread over several databases by user id. A user's tasks, tombstones and change version live on
+// one shard, so every operation is a local transaction there. New users are placed by hashing their id;
+// placements are recorded in task_shard_directory (in the application database) on the first write, so
+// adding shards only affects new users until rebalance() moves existing ones. Moves run online: the bulk
+// copy does not block the user, only the final catch-up and the directory switch do.
+// Every instance caches the directory. A move fences the user on the old shard before it switches the
+// directory row, so an instance with an outdated entry gets UserMovedException there and looks it up again.
+@Component
+@ConditionalOnProperty(name = "tasks.store.engine", havingValue = "sharded")
+public class ShardedTaskStore implements TaskStore {
+
+    // Task ids come from one sequence for all shards, so they stay unique when users move
+    private static final int ID_BLOCK_SIZE = 1000;
+    // How long an operation waits for a move that fenced its user to switch the directory row
+    private static final int MOVE_WAIT_ATTEMPTS = 500;
+    private static final long MOVE_WAIT_MILLIS = 10;
+
+    private final JdbcTemplate directory;
+    private final TransactionTemplate directoryTransaction;
+    private final List<DataSource> dataSources;
+    private final List<TaskShard> shards = new ArrayList<>();
+    private final Map<Long, Integer> placements = new ConcurrentHashMap<>();
+    private final ReentrantLock idLock = new ReentrantLock();
+
+    // Deleted tasks are reported to syncs for this long, clients that sync less often start over
+    @Value("${tasks.tombstones.retention:30d}")
+    private Duration tombstoneRetention = Duration.ofDays(30);
+
+    private long nextId;
+    private long idLimit;
+
+    @Autowired
+    public ShardedTaskStore(DataSource dataSource,
+                            @Value("${tasks.store.sharded.urls}") List<String> urls,
+                            @Value("${tasks.store.sharded.username:sa}") String username,
+                            @Value("${tasks.store.sharded.password:}") String password,
+                            @Value("${tasks.store.sharded.pool-size:10}") int poolSize) {
+        this(dataSource, urls.stream().map(url -> pool(url, username, password, poolSize)).toList());
+    }
+
+    ShardedTaskStore(DataSource directoryDataSource, List<? extends DataSource> shardDataSources) {
+        this.directory = new JdbcTemplate(directoryDataSource);
+        this.directoryTransaction = new TransactionTemplate(new DataSourceTransactionManager(directoryDataSource));
+        this.dataSources = List.copyOf(shardDataSources);
+        for (DataSource shard : dataSources) {
+            shards.add(new TaskShard(shard));
+        }
+
+        directory.execute("create table if not exists task_shard_directory "
+                + "(user_id bigint primary key, shard int not null)");
+        directory.execute("create sequence if not exists task_ids start with 1 increment by " + ID_BLOCK_SIZE);
+        directory.query("select user_id, shard from task_shard_directory", rs -> {
+            placements.put(rs.getLong("user_id"), rs.getInt("shard"));
+        });
+        placements.values().stream().filter(shard -> shard >= shards.size()).findAny().ifPresent(shard -> {
+            throw new IllegalStateException("Users are placed on shard " + shard + " but only "
+                    + shards.size() + " shards are configured");
+        });
+    }
+
+    private static HikariDataSource pool(String url, String username, String password, int poolSize) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setJdbcUrl(url);
+        pool.setUsername(username);
+        pool.setPassword(password);
+        pool.setMaximumPoolSize(poolSize);
+        pool.setPoolName("shard-" + url.substring(url.lastIndexOf(':') + 1));
+        return pool;
+    }
+
+    @PreDestroy
+    public void close() {
+        for (DataSource dataSource : dataSources) {
+            if (dataSource instanceof HikariDataSource pool) {
+                pool.close();
+            }
+        }
+    }
+
+    @Override
+    public TaskWrite create(Long userId, List<TaskRequest> requests) {
+        return onShard(userId, true, shard -> shard.create(userId, requests, this::nextTaskId));
+    }
+
+    @Override
+    public TaskWrite update(Long userId, List<TaskPatchItem> items) {
+        return onShard(userId, true, shard -> shard.update(userId, items));
+    }
+
+    @Override
+    public long patch(Long userId, Long taskId, TaskRequest changes) {
+        return onShard(userId, true, shard -> shard.patch(userId, taskId, changes));
+    }
+
+    @Override
+    public TaskWrite delete(Long userId, Collection<Long> taskIds) {
+        return onShard(userId, true, shard -> shard.delete(userId, taskIds));
+    }
+
+    @Override
+    public List<TaskResponse> findAll(Long userId) {
+        return onShard(userId, false, shard -> shard.findAll(userId));
+    }
+
+    @Override
+    public void export(Long userId, Consumer<TaskResponse> sink) {
+        onShard(userId, false, shard -> {
+            shard.export(userId, sink);
+            return null;
+        });
+    }
+
+    @Override
+    public List<TaskResponse> findPage(Long userId, Task.TaskStatus status, Long cursor, boolean descending, int limit) {
+        return onShard(userId, false, shard -> shard.findPage(userId, status, cursor, descending, limit));
+    }
+
+    @Override
+    public TaskChangesResponse findChangesSince(Long userId, long since) {
+        return onShard(userId, false, shard -> shard.findChangesSince(userId, since));
+    }
+
+    @Scheduled(initialDelayString = "${tasks.tombstones.purge-interval-ms:3600000}",
+            fixedDelayString = "${tasks.tombstones.purge-interval-ms:3600000}")
+    public void purgeTombstones() {
+        purgeTombstonesDeletedBefore(Instant.now().minus(tombstoneRetention));
+    }
+
+    // Each shard purges in its own transaction. A user copied by a move in progress keeps the tombstones
+    // copied to the target until its next purge
+    @Override
+    public int purgeTombstonesDeletedBefore(Instant before) {
+        int purged = 0;
+        for (TaskShard shard : shards) {
+            purged += shard.purgeTombstones(before);
+        }
+        return purged;
+    }
+
+    // Shard a user's tasks are on, or would be placed on by their first write
+    public int shardOf(Long userId) {
+        Integer placed = placements.get(userId);
+        if (placed == null) {
+            placed = lookUp(userId);
+        }
+        return placed != null ? placed : home(userId);
+    }
+
+    // Shard the hash places a user on with the current number of shards
+    int home(Long userId) {
+        return Math.floorMod(Long.hashCode(userId * 0x9E3779B97F4A7C15L), shards.size());
+    }
+
+    public List<ShardStats> stats() {
+        Map<Integer, Long> users = new HashMap<>();
+        directory.query("select shard, count(*) as users from task_shard_directory group by shard", rs -> {
+            users.put(rs.getInt("shard"), rs.getLong("users"));
+        });
+        List<ShardStats> stats = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            stats.add(new ShardStats(i, users.getOrDefault(i, 0L), shards.get(i).countTasks()));
+        }
+        return stats;
+    }
+
+    // Moves a user to the given shard, returns false if they are there already. The user's directory row
+    // stays locked until the move commits, so moves of one user never overlap, from any instance. Writes
+    // and reads of the user only wait while the changes made during the bulk copy are applied
+    public boolean move(Long userId, int target) {
+        if (target < 0 || target >= shards.size()) {
+            throw new RuntimeException("Shard must be between 0 and " + (shards.size() - 1));
+        }
+        Integer source = directoryTransaction.execute(status -> {
+            Integer placed = DataAccessUtils.singleResult(directory.queryForList(
+                    "select shard from task_shard_directory where user_id = ? for update", Integer.class, userId));
+            if (placed == null) {
+                // Nothing written yet, only the placement changes
+                directory.update("insert into task_shard_directory (user_id, shard) values (?, ?)", userId, target);
+                return null;
+            }
+            if (placed == target) {
+                return placed;
+            }
+            TaskShard from = shards.get(placed);
+            TaskShard to = shards.get(target);
+
+            TaskShard.UserData copied = from.read(userId, -1);
+            to.write(userId, copied, -1);
+            try {
+                to.write(userId, from.fence(userId, copied.version()), copied.version());
+                directory.update("update task_shard_directory set shard = ? where user_id = ?", target, userId);
+            } catch (RuntimeException e) {
+                to.clear(userId);
+                from.unfence(userId);
+                throw e;
+            }
+            return placed;
+        });
+        placements.put(userId, target);
+        if (source == null || source == target) {
+            return source == null;
+        }
+        shards.get(source).clear(userId);
+        return true;
+    }
+
+    // Moves every user that is not on the shard the hash places them on, e.g. after adding shards
+    public int rebalance() {
+        Map<Long, Integer> placed = new HashMap<>();
+        directory.query("select user_id, shard from task_shard_directory", rs -> {
+            placed.put(rs.getLong("user_id"), rs.getInt("shard"));
+        });
+        int moved = 0;
+        for (Map.Entry<Long, Integer> placement : placed.entrySet()) {
+            int home = home(placement.getKey());
+            if (placement.getValue() != home && move(placement.getKey(), home)) {
+                moved++;
+            }
+        }
+        return moved;
+    }
+
+    // Runs against the cached shard, and against the directory's one if the user was moved meanwhile.
+    // While a move has fenced the user but not switched the directory row yet, waits for it
+    private <T> T onShard(Long userId, boolean write, Function<TaskShard, T> operation) {
+        int shard = write ? place(userId) : shardOf(userId);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return operation.apply(shards.get(shard));
+            } catch (TaskShard.UserMovedException e) {
+                Integer current = lookUp(userId);
+                if (current == null || current == shard) {
+                    if (attempt == MOVE_WAIT_ATTEMPTS) {
+                        throw new RuntimeException("Tasks are being moved, try again later");
+                    }
+                    pause();
+                } else {
+                    shard = current;
+                }
+            }
+        }
+    }
+
+    // Records the placement of a user's first write, the directory row wins if another instance raced us
+    private int place(Long userId) {
+        return placements.computeIfAbsent(userId, id -> {
+            int home = home(id);
+            try {
+                directory.update("insert into task_shard_directory (user_id, shard) values (?, ?)", id, home);
+                return home;
+            } catch (DuplicateKeyException e) {
+                return directory.queryForObject("select shard from task_shard_directory where user_id = ?",
+                        Integer.class, id);
+            }
+        });
+    }
+
+    // Reads the user's directory row and refreshes the cached placement
+    private Integer lookUp(Long userId) {
+        Integer placed = DataAccessUtils.singleResult(directory.queryForList(
+                "select shard from task_shard_directory where user_id = ?", Integer.class, userId));
+        if (placed != null) {
+            placements.put(userId, placed);
+        }
+        return placed;
+    }
+
+    private static void pause() {
+        try {
+            Thread.sleep(MOVE_WAIT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for tasks to be moved");
+        }
+    }
+
+    private long nextTaskId() {
+        idLock.lock();
+        try {
+            if (nextId == idLimit) {
+                nextId = directory.queryForObject("select next value for task_ids", Long.class);
+                idLimit = nextId + ID_BLOCK_SIZE;
+            }
+            return nextId++;
+        } finally {
+            idLock.unlock();
+        }
+    }
+
+    public record ShardStats(int shard, long users, long tasks) {}
+}
@@ -0,0 +1,39 @@
+package ar.meetus.tasky.store;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+// /actuator/shards: users and tasks per shard. POST rebalances, POST /{userId} with {"shard": n} moves one user
+@Component
+@Endpoint(id = "shards")
+@ConditionalOnProperty(name = "tasks.store.engine", havingValue = "sharded")
+public class ShardsEndpoint {
+
+    private final ShardedTaskStore taskStore;
+
+    public ShardsEndpoint(ShardedTaskStore taskStore) {
+        this.taskStore = taskStore;
+    }
+
+    @ReadOperation
+    public List<ShardedTaskStore.ShardStats> shards() {
+        return taskStore.stats();
+    }
+
+    @WriteOperation
+    public Map<String, Integer> rebalance() {
+        return Map.of("moved", taskStore.rebalance());
+    }
+
+    @WriteOperation
+    public Map<String, Object> move(@Selector Long userId, int shard) {
+        return Map.of("userId", userId, "shard", shard, "moved", taskStore.move(userId, shard));
+    }
+}
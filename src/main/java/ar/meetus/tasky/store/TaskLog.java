@@ -0,0 +1,286 @@
+package ar.meetus.tasky.store;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Append-only log split into numbered segment files (tasks-<n>.log). Records are framed as
+// [length][crc32][payload] and written by a single thread that drains whatever is queued, writes it and
+// fsyncs once for the whole batch (group commit), so concurrent writers share the cost of a sync.
+class TaskLog implements AutoCloseable {
+
+    private static final String PREFIX = "tasks-";
+    private static final String SUFFIX = ".log";
+    private static final int MAX_BATCH = 1024;
+
+    private final Path directory;
+    private final boolean fsync;
+    private final BlockingQueue<Entry> queue;
+    private Thread writer;
+    // Set once the writer stops, for a write error or because the log was closed
+    private volatile RuntimeException failure;
+    private long segment;
+    private FileOutputStream file;
+    private BufferedOutputStream out;
+
+    TaskLog(Path directory, boolean fsync, int queueCapacity) {
+        this.directory = directory;
+        this.fsync = fsync;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    // Segment numbers present on disk, oldest first
+    List<Long> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    // Feeds every intact record of the segments from the given one on, in order. A torn or corrupt record
+    // (a crash in the middle of a write) ends the segment; it was never acknowledged as durable.
+    void replay(long fromSegment, Consumer<byte[]> consumer) throws IOException {
+        for (long number : segments()) {
+            if (number < fromSegment) {
+                continue;
+            }
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(segmentPath(number)))) {
+                byte[] record;
+                while ((record = readRecord(in)) != null) {
+                    consumer.accept(record);
+                }
+            }
+        }
+    }
+
+    // Starts writing to a fresh segment after the existing ones
+    void start() throws IOException {
+        List<Long> existing = segments();
+        openSegment(existing.isEmpty() ? 1 : existing.get(existing.size() - 1) + 1);
+        writer = Thread.ofPlatform().name("task-log-writer").daemon().start(this::writeLoop);
+    }
+
+    // Queues a record, the future completes once it is written (and synced when fsync is on).
+    // Blocks while the queue is full, which throttles writers to the speed of the disk
+    CompletableFuture<Void> append(byte[] record) {
+        Entry entry = new Entry(record, false);
+        put(entry);
+        return entry.done;
+    }
+
+    // Closes the current segment after everything queued so far and continues in a new one.
+    // Returns the new segment number: all records appended before the call are in older segments
+    long rotate() {
+        Entry entry = new Entry(null, false);
+        put(entry);
+        entry.done.join();
+        return entry.segment;
+    }
+
+    void deleteSegmentsBefore(long number) throws IOException {
+        for (long existing : segments()) {
+            if (existing < number) {
+                Files.deleteIfExists(segmentPath(existing));
+            }
+        }
+    }
+
+    // Queues a shutdown marker behind everything appended so far and waits until the writer has synced it
+    // all and closed the segment. Interrupting the writer instead could abort a force() in progress
+    @Override
+    public void close() {
+        if (writer == null || failure != null) {
+            return;
+        }
+        Entry shutdown = new Entry(null, true);
+        try {
+            put(shutdown);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // The writer already stopped
+        }
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(MAX_BATCH);
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);
+                if (!writeBatch(batch)) {
+                    break;
+                }
+                batch.clear();
+            }
+            failure = new IllegalStateException("Task log is closed");
+        } catch (IOException e) {
+            // The log can no longer be written, fail every pending and future write
+            failure = new UncheckedIOException("Task log write failed", e);
+        } catch (InterruptedException e) {
+            failure = new IllegalStateException("Task log writer was interrupted", e);
+        }
+        batch.forEach(entry -> entry.done.completeExceptionally(failure));
+        failQueued();
+    }
+
+    // Returns false once the shutdown marker was written, entries queued behind it are failed
+    private boolean writeBatch(List<Entry> batch) throws IOException {
+        int synced = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Entry entry = batch.get(i);
+            if (entry.record != null) {
+                writeRecord(entry.record);
+                continue;
+            }
+            if (entry.shutdown) {
+                closeSegment();
+                complete(batch, synced, i + 1);
+                batch.subList(0, i + 1).clear();
+                return false;
+            }
+            sync();
+            complete(batch, synced, i);
+            closeSegment();
+            openSegment(segment + 1);
+            entry.segment = segment;
+            entry.done.complete(null);
+            synced = i + 1;
+        }
+        sync();
+        complete(batch, synced, batch.size());
+        return true;
+    }
+
+    private void writeRecord(byte[] record) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        writeInt(record.length);
+        writeInt((int) crc.getValue());
+        out.write(record);
+    }
+
+    private void writeInt(int value) throws IOException {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private void sync() throws IOException {
+        out.flush();
+        if (fsync) {
+            file.getChannel().force(false);
+        }
+    }
+
+    private static void complete(List<Entry> batch, int from, int to) {
+        for (int i = from; i < to; i++) {
+            batch.get(i).done.complete(null);
+        }
+    }
+
+    private void openSegment(long number) throws IOException {
+        segment = number;
+        file = new FileOutputStream(segmentPath(number).toFile(), true);
+        out = new BufferedOutputStream(file, 64 * 1024);
+        if (fsync) {
+            syncDirectory();
+        }
+    }
+
+    private void closeSegment() throws IOException {
+        if (out != null) {
+            sync();
+            out.close();
+            out = null;
+        }
+    }
+
+    // Makes a newly created segment file itself durable, not just its contents
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported on every platform (e.g. Windows), the file contents are still synced
+        }
+    }
+
+    private void put(Entry entry) {
+        if (writer == null) {
+            throw new IllegalStateException("Task log is not started");
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        try {
+            queue.put(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while appending to the task log", e);
+        }
+        // The writer may have failed after the check, it no longer drains the queue
+        if (failure != null) {
+            failQueued();
+        }
+    }
+
+    private void failQueued() {
+        Entry entry;
+        while ((entry = queue.poll()) != null) {
+            entry.done.completeExceptionally(failure);
+        }
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(PREFIX + number + SUFFIX);
+    }
+
+    private static byte[] readRecord(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length < 0 || length > 16 * 1024 * 1024) {
+                return null;
+            }
+            byte[] record = in.readNBytes(length);
+            CRC32 crc = new CRC32();
+            crc.update(record);
+            return record.length == length && (int) crc.getValue() == checksum ? record : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static final class Entry {
+        // null marks a segment rotation, or the end of the log with shutdown set
+        private final byte[] record;
+        private final boolean shutdown;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private volatile long segment;
+
+        private Entry(byte[] record, boolean shutdown) {
+            this.record = record;
+            this.shutdown = shutdown;
+        }
+    }
+}
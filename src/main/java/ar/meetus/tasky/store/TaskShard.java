@@ -0,0 +1,361 @@
+package ar.meetus.tasky.store;
+
+import ar.meetus.tasky.dto.TaskChangesResponse;
+import ar.meetus.tasky.dto.TaskPatchItem;
+import ar.meetus.tasky.dto.TaskRequest;
+import ar.meetus.tasky.dto.TaskResponse;
+import ar.meetus.tasky.exception.ResourceNotFoundException;
+import ar.meetus.tasky.model.Task;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.support.DataAccessUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+// One database of the sharded engine. Holds the tasks, tombstones and change versions of the users placed
+// on it, in the same shape as the JPA engine's tables, and runs each write in a local transaction.
+// A user moved off the shard keeps a fenced version row here: writes and reads of that user fail with
+// UserMovedException, so an instance routing with an outdated directory looks the shard up again.
+class TaskShard {
+
+    private static final String COLUMNS = "id, title, description, status";
+    private static final RowMapper<TaskResponse> TASK = (rs, row) -> new TaskResponse(rs.getLong("id"),
+            rs.getString("title"), rs.getString("description"), Task.TaskStatus.valueOf(rs.getString("status")));
+    private static final RowMapper<StoredTask> STORED_TASK = (rs, row) -> new StoredTask(rs.getLong("id"),
+            rs.getString("title"), rs.getString("description"), rs.getString("status"),
+            rs.getLong("change_version"), rs.getTimestamp("updated_at"));
+    private static final RowMapper<Tombstone> TOMBSTONE = (rs, row) -> new Tombstone(rs.getLong("task_id"),
+            rs.getLong("change_version"), rs.getTimestamp("deleted_at"));
+
+    private final JdbcTemplate jdbc;
+    private final NamedParameterJdbcTemplate namedJdbc;
+    // Exports read through a cursor instead of materializing the result
+    private final JdbcTemplate cursorJdbc;
+    private final TransactionTemplate transaction;
+    private final TransactionTemplate readOnlyTransaction;
+
+    TaskShard(DataSource dataSource) {
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.namedJdbc = new NamedParameterJdbcTemplate(jdbc);
+        this.cursorJdbc = new JdbcTemplate(dataSource);
+        this.cursorJdbc.setFetchSize(500);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        createSchema();
+    }
+
+    private void createSchema() {
+        jdbc.execute("create table if not exists tasks (id bigint primary key, user_id bigint not null, "
+                + "title varchar(200) not null, description varchar(1000), status varchar(16) not null, "
+                + "change_version bigint not null, updated_at timestamp)");
+        jdbc.execute("create index if not exists idx_tasks_user_id on tasks (user_id, id)");
+        jdbc.execute("create index if not exists idx_tasks_user_status_id on tasks (user_id, status, id)");
+        jdbc.execute("create index if not exists idx_tasks_user_version on tasks (user_id, change_version)");
+        jdbc.execute("create table if not exists task_tombstones (task_id bigint not null, user_id bigint not null, "
+                + "change_version bigint not null, deleted_at timestamp not null)");
+        jdbc.execute("create index if not exists idx_task_tombstones_user_version "
+                + "on task_tombstones (user_id, change_version)");
+        jdbc.execute("create table if not exists task_versions (user_id bigint primary key, version bigint not null, "
+                + "fenced boolean default false not null, horizon bigint default 0 not null)");
+        // Shards created before tombstones were purged
+        jdbc.execute("alter table task_versions add column if not exists horizon bigint default 0 not null");
+    }
+
+    TaskStore.TaskWrite create(Long userId, List<TaskRequest> requests, LongSupplier ids) {
+        return transaction.execute(status -> {
+            long version = nextVersion(userId);
+            Timestamp now = Timestamp.from(Instant.now());
+            List<TaskResponse> tasks = new ArrayList<>(requests.size());
+            List<Object[]> rows = new ArrayList<>(requests.size());
+            for (TaskRequest request : requests) {
+                TaskResponse task = new TaskResponse(ids.getAsLong(), request.getTitle(), request.getDescription(),
+                        request.getStatus());
+                tasks.add(task);
+                rows.add(new Object[]{task.getId(), userId, task.getTitle(), task.getDescription(),
+                        task.getStatus().name(), version, now});
+            }
+            jdbc.batchUpdate("insert into tasks (id, user_id, title, description, status, change_version, updated_at) "
+                    + "values (?, ?, ?, ?, ?, ?, ?)", rows);
+            return TaskStore.TaskWrite.of(version, tasks);
+        });
+    }
+
+    // One SELECT for the whole batch, missing or foreign tasks fail it before anything is written
+    TaskStore.TaskWrite update(Long userId, List<TaskPatchItem> items) {
+        return transaction.execute(status -> {
+            long version = nextVersion(userId);
+            Set<Long> ids = items.stream().map(TaskPatchItem::getId).collect(Collectors.toCollection(LinkedHashSet::new));
+            Map<Long, TaskResponse> tasksById = namedJdbc.query("select " + COLUMNS + " from tasks "
+                            + "where user_id = :userId and id in (:ids)",
+                    new MapSqlParameterSource("userId", userId).addValue("ids", ids), TASK).stream()
+                    .collect(Collectors.toMap(TaskResponse::getId, Function.identity()));
+            if (tasksById.size() != ids.size()) {
+                Set<Long> missing = new HashSet<>(ids);
+                missing.removeAll(tasksById.keySet());
+                throw ids.size() == 1
+                        ? new ResourceNotFoundException("Task not found or access denied")
+                        : new ResourceNotFoundException("Tasks not found or access denied: " + missing);
+            }
+
+            Timestamp now = Timestamp.from(Instant.now());
+            List<TaskResponse> updated = new ArrayList<>(items.size());
+            List<Object[]> rows = new ArrayList<>(items.size());
+            for (TaskPatchItem item : items) {
+                TaskResponse task = tasksById.get(item.getId());
+                if (item.getTitle() != null) {
+                    task.setTitle(item.getTitle());
+                }
+                if (item.getDescription() != null) {
+                    task.setDescription(item.getDescription());
+                }
+                if (item.getStatus() != null) {
+                    task.setStatus(item.getStatus());
+                }
+                updated.add(task);
+                rows.add(new Object[]{task.getTitle(), task.getDescription(), task.getStatus().name(), version, now,
+                        task.getId()});
+            }
+            jdbc.batchUpdate("update tasks set title = ?, description = ?, status = ?, change_version = ?, "
+                    + "updated_at = ? where id = ?", rows);
+            return TaskStore.TaskWrite.of(version, updated);
+        });
+    }
+
+    long patch(Long userId, Long taskId, TaskRequest changes) {
+        return transaction.execute(status -> {
+            long version = nextVersion(userId);
+            int updated = jdbc.update("update tasks set title = coalesce(?, title), "
+                            + "description = coalesce(?, description), status = coalesce(?, status), "
+                            + "change_version = ?, updated_at = ? where id = ? and user_id = ?",
+                    changes.getTitle(), changes.getDescription(),
+                    changes.getStatus() != null ? changes.getStatus().name() : null,
+                    version, Timestamp.from(Instant.now()), taskId, userId);
+            if (updated == 0) {
+                throw new ResourceNotFoundException("Task not found or access denied");
+            }
+            return version;
+        });
+    }
+
+    TaskStore.TaskWrite delete(Long userId, Collection<Long> taskIds) {
+        return transaction.execute(status -> {
+            Set<Long> ids = new LinkedHashSet<>(taskIds);
+            long version = nextVersion(userId);
+            int deleted = namedJdbc.update("delete from tasks where user_id = :userId and id in (:ids)",
+                    new MapSqlParameterSource("userId", userId).addValue("ids", ids));
+            if (deleted != ids.size()) {
+                throw new ResourceNotFoundException(ids.size() == 1
+                        ? "Task not found or access denied" : "Tasks not found or access denied");
+            }
+            Timestamp now = Timestamp.from(Instant.now());
+            jdbc.batchUpdate("insert into task_tombstones (task_id, user_id, change_version, deleted_at) "
+                    + "values (?, ?, ?, ?)", ids.stream()
+                    .map(id -> new Object[]{id, userId, version, now})
+                    .collect(Collectors.toList()));
+            return new TaskStore.TaskWrite(version, List.copyOf(ids), List.of());
+        });
+    }
+
+    List<TaskResponse> findAll(Long userId) {
+        return owned(userId, jdbc.query("select " + COLUMNS + " from tasks where user_id = ? order by id", TASK, userId));
+    }
+
+    // A query that returned rows saw the user's data before any move deleted it, only an empty one is retried
+    void export(Long userId, Consumer<TaskResponse> sink) {
+        long[] exported = {0};
+        readOnlyTransaction.executeWithoutResult(status -> cursorJdbc.query(
+                "select " + COLUMNS + " from tasks where user_id = ? order by id",
+                (RowCallbackHandler) rs -> {
+                    exported[0]++;
+                    sink.accept(TASK.mapRow(rs, 0));
+                }, userId));
+        if (exported[0] == 0) {
+            owned(userId, null);
+        }
+    }
+
+    List<TaskResponse> findPage(Long userId, Task.TaskStatus status, Long cursor, boolean descending, int limit) {
+        String statusFilter = status != null ? " and status = ?" : "";
+        String sql = "select " + COLUMNS + " from tasks where user_id = ?" + statusFilter
+                + (descending ? " and id < ? order by id desc" : " and id > ? order by id asc") + " limit ?";
+        long bound = cursor != null ? cursor : descending ? Long.MAX_VALUE : 0L;
+        return owned(userId, status != null
+                ? jdbc.query(sql, TASK, userId, status.name(), bound, limit)
+                : jdbc.query(sql, TASK, userId, bound, limit));
+    }
+
+    TaskChangesResponse findChangesSince(Long userId, long since) {
+        return readOnlyTransaction.execute(status -> {
+            long version = version(userId);
+            if (since == version) {
+                return new TaskChangesResponse(version, List.of(), List.of());
+            }
+            // A version ahead of ours was not issued by this shard, and deletes before the horizon are
+            // forgotten: send everything and have the client drop what it has
+            boolean reset = since > version || since > 0 && since < horizon(userId);
+            long from = reset ? 0L : since;
+            return owned(userId, new TaskChangesResponse(version,
+                    jdbc.query("select " + COLUMNS + " from tasks where user_id = ? and change_version > ? "
+                            + "and change_version <= ? order by change_version, id", TASK, userId, from, version),
+                    reset ? List.of() : jdbc.queryForList("select task_id from task_tombstones where user_id = ? "
+                            + "and change_version > ? and change_version <= ?", Long.class, userId, from, version),
+                    reset));
+        });
+    }
+
+    // Deletes the tombstones older than the cutoff and raises their users' horizons past them in the same
+    // transaction, like the JPA engine
+    int purgeTombstones(Instant before) {
+        Timestamp cutoff = Timestamp.from(before);
+        return transaction.execute(status -> {
+            jdbc.update("update task_versions v set horizon = greatest(horizon, (select max(t.change_version) "
+                    + "from task_tombstones t where t.user_id = v.user_id and t.deleted_at < ?)) "
+                    + "where exists (select 1 from task_tombstones t where t.user_id = v.user_id and t.deleted_at < ?)",
+                    cutoff, cutoff);
+            return jdbc.update("delete from task_tombstones where deleted_at < ?", cutoff);
+        });
+    }
+
+    // Tasks and tombstones written after the given version (all of them for -1), for moving a user
+    UserData read(Long userId, long since) {
+        return readOnlyTransaction.execute(status -> new UserData(version(userId), horizon(userId),
+                jdbc.query("select id, title, description, status, change_version, updated_at from tasks "
+                        + "where user_id = ? and change_version > ?", STORED_TASK, userId, since),
+                jdbc.query("select task_id, change_version, deleted_at from task_tombstones "
+                        + "where user_id = ? and change_version > ?", TOMBSTONE, userId, since)));
+    }
+
+    // Fences the user off this shard and returns what was written after the given version. Writes that got
+    // the version row first are included, later ones fail, so nothing written here is missed by the move
+    UserData fence(Long userId, long since) {
+        return transaction.execute(status -> {
+            if (jdbc.update("update task_versions set fenced = true where user_id = ?", userId) == 0) {
+                try {
+                    jdbc.update("insert into task_versions (user_id, version, fenced) values (?, 0, true)", userId);
+                } catch (DuplicateKeyException e) {
+                    jdbc.update("update task_versions set fenced = true where user_id = ?", userId);
+                }
+            }
+            return read(userId, since);
+        });
+    }
+
+    // Lifts the fence again when a move fails before the directory is switched
+    void unfence(Long userId) {
+        jdbc.update("update task_versions set fenced = false where user_id = ?", userId);
+    }
+
+    // Applies what read(userId, since) returned on another shard: rows it carries replace the ones here.
+    // A full copy (since -1) first drops whatever an earlier, interrupted move left behind and stays fenced,
+    // the catch-up copy takes the fence down once the user's data is complete
+    void write(Long userId, UserData data, long since) {
+        transaction.executeWithoutResult(status -> {
+            if (since < 0) {
+                jdbc.update("delete from tasks where user_id = ?", userId);
+                jdbc.update("delete from task_tombstones where user_id = ?", userId);
+            } else {
+                List<Object[]> stale = new ArrayList<>();
+                data.tasks().forEach(task -> stale.add(new Object[]{task.id()}));
+                data.tombstones().forEach(tombstone -> stale.add(new Object[]{tombstone.taskId()}));
+                jdbc.batchUpdate("delete from tasks where id = ?", stale);
+                jdbc.update("delete from task_tombstones where user_id = ? and change_version > ?", userId, since);
+            }
+            jdbc.batchUpdate("insert into tasks (id, user_id, title, description, status, change_version, updated_at) "
+                    + "values (?, ?, ?, ?, ?, ?, ?)", data.tasks().stream()
+                    .map(task -> new Object[]{task.id(), userId, task.title(), task.description(), task.status(),
+                            task.changeVersion(), task.updatedAt()})
+                    .collect(Collectors.toList()));
+            jdbc.batchUpdate("insert into task_tombstones (task_id, user_id, change_version, deleted_at) "
+                    + "values (?, ?, ?, ?)", data.tombstones().stream()
+                    .map(tombstone -> new Object[]{tombstone.taskId(), userId, tombstone.changeVersion(),
+                            tombstone.deletedAt()})
+                    .collect(Collectors.toList()));
+            jdbc.update("delete from task_versions where user_id = ?", userId);
+            jdbc.update("insert into task_versions (user_id, version, fenced, horizon) values (?, ?, ?, ?)",
+                    userId, data.version(), since < 0, data.horizon());
+        });
+    }
+
+    // Deletes a user's tasks and tombstones but keeps a fenced version row for outdated routers
+    void clear(Long userId) {
+        transaction.executeWithoutResult(status -> {
+            jdbc.update("delete from tasks where user_id = ?", userId);
+            jdbc.update("delete from task_tombstones where user_id = ?", userId);
+            jdbc.update("update task_versions set fenced = true where user_id = ?", userId);
+        });
+    }
+
+    long countTasks() {
+        return jdbc.queryForObject("select count(*) from tasks", Long.class);
+    }
+
+    // Row-locks the user's version until commit, like the users row in the JPA engine. Runs first in every
+    // write, so a fenced user fails before anything is read or written
+    private long nextVersion(Long userId) {
+        String bump = "update task_versions set version = version + 1 where user_id = ? and not fenced";
+        if (jdbc.update(bump, userId) == 0) {
+            try {
+                jdbc.update("insert into task_versions (user_id, version) values (?, 1)", userId);
+            } catch (DuplicateKeyException e) {
+                // Another first write or a fence got there first
+                if (jdbc.update(bump, userId) == 0) {
+                    throw new UserMovedException();
+                }
+            }
+        }
+        return version(userId);
+    }
+
+    // Checked after a read, a move fences the user before it deletes anything here
+    private <T> T owned(Long userId, T result) {
+        if (Boolean.TRUE.equals(DataAccessUtils.singleResult(jdbc.queryForList(
+                "select fenced from task_versions where user_id = ?", Boolean.class, userId)))) {
+            throw new UserMovedException();
+        }
+        return result;
+    }
+
+    private long version(Long userId) {
+        List<Long> version = jdbc.queryForList("select version from task_versions where user_id = ?", Long.class, userId);
+        return version.isEmpty() ? 0L : version.get(0);
+    }
+
+    private long horizon(Long userId) {
+        List<Long> horizon = jdbc.queryForList("select horizon from task_versions where user_id = ?", Long.class, userId);
+        return horizon.isEmpty() ? 0L : horizon.get(0);
+    }
+
+    static class UserMovedException extends RuntimeException {
+        UserMovedException() {
+            super("Tasks were moved to another shard");
+        }
+    }
+
+    record UserData(long version, long horizon, List<StoredTask> tasks, List<Tombstone> tombstones) {}
+
+    record StoredTask(long id, String title, String description, String status, long changeVersion,
+                      Timestamp updatedAt) {}
+
+    record Tombstone(long taskId, long changeVersion, Timestamp deletedAt) {}
+}
@@ -0,0 +1,52 @@
+package ar.meetus.tasky.store;
+
+import ar.meetus.tasky.dto.TaskChangesResponse;
+import ar.meetus.tasky.dto.TaskPatchItem;
+import ar.meetus.tasky.dto.TaskRequest;
+import ar.meetus.tasky.dto.TaskResponse;
+import ar.meetus.tasky.model.Task;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Storage engine behind TaskService, selected with tasks.store.engine (jpa or memory). Every write is
+// scoped to the owner, allocates the next change version of the owner's task set and is all or nothing;
+// writes touching a missing or foreign task throw ResourceNotFoundException.
+public interface TaskStore {
+
+    // Requests are stored as given, TaskService fills in defaults such as the OPEN status
+    TaskWrite create(Long userId, List<TaskRequest> requests);
+
+    // Applies the non-null fields of each item and returns the updated tasks in item order
+    TaskWrite update(Long userId, List<TaskPatchItem> items);
+
+    // Same as a single item update without reading the task back, returns the change version
+    long patch(Long userId, Long taskId, TaskRequest changes);
+
+    TaskWrite delete(Long userId, Collection<Long> taskIds);
+
+    List<TaskResponse> findAll(Long userId);
+
+    // Hands every task to the sink in id order without collecting them, for exports of any size
+    void export(Long userId, Consumer<TaskResponse> sink);
+
+    // Keyset page of at most limit tasks after (or before, when descending) the cursor task id
+    List<TaskResponse> findPage(Long userId, Task.TaskStatus status, Long cursor, boolean descending, int limit);
+
+    // Tasks written and ids deleted after the given version, up to the current version. A version older than
+    // the purged tombstones, or ahead of the current one, is answered with every task and reset set
+    TaskChangesResponse findChangesSince(Long userId, long since);
+
+    // Drops the tombstones of tasks deleted before the cutoff, run on a schedule with tasks.tombstones.retention
+    int purgeTombstonesDeletedBefore(Instant before);
+
+    // Version of a write plus the affected task ids and, for creates and updates, the tasks
+    record TaskWrite(long version, List<Long> taskIds, List<TaskResponse> tasks) {
+
+        public static TaskWrite of(long version, List<TaskResponse> tasks) {
+            return new TaskWrite(version, tasks.stream().map(TaskResponse::getId).toList(), tasks);
+        }
+    }
+}
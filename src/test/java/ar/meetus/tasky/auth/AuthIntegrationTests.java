@@ -2,6 +2,9 @@ package ar.meetus.tasky.auth;
 
 import ar.meetus.tasky.dto.LoginRequest;
 import ar.meetus.tasky.dto.RegisterRequest;
+import ar.meetus.tasky.model.User;
+import ar.meetus.tasky.repository.RevokedTokenRepository;
+import ar.meetus.tasky.repository.UserRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -9,10 +12,15 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.http.MediaType;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
@@ -29,6 +37,15 @@ class AuthIntegrationTests {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
     private RegisterRequest registerRequest;
     private LoginRequest loginRequest;
 
@@ -103,4 +120,65 @@ class AuthIntegrationTests {
                         .content(objectMapper.writeValueAsString(loginRequest)))
                 .andExpect(status().isBadRequest());
     }
+
+    @Test
+    @DisplayName("Hashes with an outdated bcrypt strength are upgraded on login")
+    void loginRehashesWeakPassword() throws Exception {
+        userRepository.save(new User("John Doe", "john@example.com", new BCryptPasswordEncoder(4).encode("password123")));
+
+        mockMvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(loginRequest)))
+                .andExpect(status().isOk());
+
+        String hash = userRepository.findByEmail("john@example.com").orElseThrow().getPassword();
+        assertThat(hash).startsWith("$2a$10$");
+        assertThat(new BCryptPasswordEncoder().matches("password123", hash)).isTrue();
+    }
+
+    @Test
+    @DisplayName("A logged out token is rejected even after it was cached")
+    void logoutRevokesToken() throws Exception {
+        String response = mockMvc.perform(post("/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(registerRequest)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String token = objectMapper.readTree(response).get("accessToken").asText();
+
+        mockMvc.perform(get("/tasks").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/auth/logout").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/tasks").header("Authorization", "Bearer " + token))
+                .andExpect(status().isForbidden());
+        assertThat(revokedTokenRepository.count()).isEqualTo(1);
+
+        // A fresh login still works
+        mockMvc.perform(post("/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(loginRequest)))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @DisplayName("User lookups by email are cached until the user is saved")
+    void userLookupIsCached() {
+        User user = userRepository.save(new User("John Doe", "john@example.com", "password-hash"));
+        Cache cache = cacheManager.getCache(UserRepository.CACHE);
+
+        User first = userRepository.findByEmail("john@example.com").orElseThrow();
+        assertThat(userRepository.findByEmail("john@example.com")).containsSame(first);
+        assertThat(cache.get("john@example.com")).isNotNull();
+
+        user.setName("Johnny");
+        userRepository.save(user);
+
+        assertThat(cache.get("john@example.com")).isNull();
+        assertThat(userRepository.findByEmail("john@example.com").orElseThrow().getName()).isEqualTo("Johnny");
+        assertThat(userRepository.findByEmail("nobody@example.com")).isEmpty();
+        assertThat(cache.get("nobody@example.com")).isNull();
+    }
 }
@@ -0,0 +1,80 @@
+package ar.meetus.tasky.auth;
+
+import ar.meetus.tasky.dto.LoginRequest;
+import ar.meetus.tasky.dto.RegisterRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "rate-limit.tasks.permits-per-minute=1",
+        "rate-limit.tasks.burst=2",
+        "rate-limit.login.permits-per-minute=1",
+        "rate-limit.login.burst=1"
+})
+@AutoConfigureMockMvc
+@Transactional
+class RateLimitIntegrationTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    @DisplayName("Requests over the limit get 429 with Retry-After, per user for /tasks and per IP for login")
+    void rateLimited() throws Exception {
+        RegisterRequest register = new RegisterRequest();
+        register.setName("Limited");
+        register.setEmail("limited@example.com");
+        register.setPassword("secret123");
+        String response = mockMvc.perform(post("/auth/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(register)))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+        String token = objectMapper.readTree(response).get("accessToken").asText();
+
+        mockMvc.perform(get("/tasks").header("Authorization", "Bearer " + token))
+            .andExpect(status().isOk());
+        mockMvc.perform(get("/tasks").header("Authorization", "Bearer " + token))
+            .andExpect(status().isOk());
+        mockMvc.perform(get("/tasks").header("Authorization", "Bearer " + token))
+            .andExpect(status().isTooManyRequests())
+            .andExpect(header().string("Retry-After", matchesPattern("[1-9][0-9]*")))
+            .andExpect(jsonPath("$.status").value(429));
+
+        LoginRequest login = new LoginRequest();
+        login.setEmail("limited@example.com");
+        login.setPassword("secret123");
+        mockMvc.perform(post("/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(login)))
+            .andExpect(status().isOk());
+        // Another client address has its own bucket
+        mockMvc.perform(post("/auth/login")
+                .with(request -> { request.setRemoteAddr("10.0.0.2"); return request; })
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(login)))
+            .andExpect(status().isOk());
+        mockMvc.perform(post("/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(login)))
+            .andExpect(status().isTooManyRequests())
+            .andExpect(header().exists("Retry-After"));
+    }
+}
@@ -0,0 +1,147 @@
+package ar.meetus.tasky.concurrency;
+
+import ar.meetus.tasky.TaskyApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// GET /tasks throughput and p99 at high concurrency on platform vs virtual request threads.
+// Run with: ./mvnw test -Dtest=VirtualThreadComparisonTest -Dbenchmark=true
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class VirtualThreadComparisonTest {
+
+    private static final int CONCURRENCY = 1000;
+    private static final int REQUESTS_PER_CLIENT = 20;
+    private static final int TASKS = 50;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("GET /tasks under high concurrency with platform and virtual threads")
+    void compareThreadingModes() throws Exception {
+        Result platform = run(false);
+        Result virtual = run(true);
+
+        System.out.println(platform);
+        System.out.println(virtual);
+        assertThat(platform.failures).isZero();
+        assertThat(virtual.failures).isZero();
+    }
+
+    private Result run(boolean virtualThreads) throws Exception {
+        // Command line arguments, properties() only sets defaults that application.properties overrides
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(TaskyApplication.class)
+                .run("--server.port=0",
+                        "--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.root=WARN",
+                        // One user sends every request, the per-user /tasks limit would reject most of them
+                        "--rate-limit.enabled=false",
+                        "--spring.datasource.url=jdbc:h2:mem:threads-" + virtualThreads)) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            String baseUrl = "http://localhost:" + port;
+            HttpClient client = HttpClient.newBuilder()
+                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+
+            String token = registerAndSeed(client, baseUrl);
+            HttpRequest list = HttpRequest.newBuilder(URI.create(baseUrl + "/tasks"))
+                    .header("Authorization", "Bearer " + token)
+                    .GET()
+                    .build();
+
+            // Warm up the JIT and connection pools before measuring
+            drive(client, list, 100, 10, new long[1000], new AtomicInteger());
+
+            long[] latencies = new long[CONCURRENCY * REQUESTS_PER_CLIENT];
+            AtomicInteger failures = new AtomicInteger();
+            long start = System.nanoTime();
+            drive(client, list, CONCURRENCY, REQUESTS_PER_CLIENT, latencies, failures);
+            long elapsed = System.nanoTime() - start;
+
+            Arrays.sort(latencies);
+            return new Result(virtualThreads ? "virtual" : "platform",
+                    latencies.length / (elapsed / 1_000_000_000.0),
+                    latencies[latencies.length / 2] / 1_000_000.0,
+                    latencies[(int) (latencies.length * 0.99)] / 1_000_000.0,
+                    failures.get());
+        }
+    }
+
+    // Closed loop: each client sends its next request as soon as the previous one completes
+    private void drive(HttpClient client, HttpRequest request, int clients, int requestsPerClient,
+                       long[] latencies, AtomicInteger failures) throws Exception {
+        AtomicInteger slot = new AtomicInteger();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                futures.add(executor.submit(() -> {
+                    for (int r = 0; r < requestsPerClient; r++) {
+                        long sent = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() != 200) {
+                                failures.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            failures.incrementAndGet();
+                        }
+                        latencies[slot.getAndIncrement() % latencies.length] = System.nanoTime() - sent;
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+    }
+
+    private String registerAndSeed(HttpClient client, String baseUrl) throws Exception {
+        String register = objectMapper.writeValueAsString(
+                Map.of("name", "Load", "email", "load@example.com", "password", "password123"));
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/auth/register"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(register))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        String token = objectMapper.readTree(response.body()).get("accessToken").asText();
+
+        for (int i = 0; i < TASKS; i++) {
+            client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/tasks"))
+                    .header("Content-Type", "application/json")
+                    .header("Authorization", "Bearer " + token)
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"title\":\"Task " + i + "\"}"))
+                    .build(), HttpResponse.BodyHandlers.discarding());
+        }
+        return token;
+    }
+
+    private record Result(String mode, double throughput, double p50Millis, double p99Millis, int failures) {
+        @Override
+        public String toString() {
+            return String.format("%-8s %10.0f req/s   p50 %8.2f ms   p99 %8.2f ms   failures %d",
+                    mode, throughput, p50Millis, p99Millis, failures);
+        }
+    }
+}
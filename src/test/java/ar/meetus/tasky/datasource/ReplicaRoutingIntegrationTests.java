@@ -0,0 +1,127 @@
+package ar.meetus.tasky.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The replica is a separate, empty H2 database. Replication is simulated by copying the heartbeat row,
+// probes are driven by the tests (the scheduled probe runs once at startup and finds no heartbeat)
+@SpringBootTest(properties = {
+        "datasource.replica.enabled=true",
+        "spring.datasource.url=jdbc:h2:mem:routing-primary",
+        "datasource.replica.jdbc-url=jdbc:h2:mem:routing-replica",
+        "datasource.replica.max-lag-ms=200",
+        "datasource.replica.probe-interval-ms=3600000",
+        "datasource.replica.read-your-writes-ms=60000"
+})
+class ReplicaRoutingIntegrationTests {
+
+    private static final String PRIMARY = "ROUTING-PRIMARY";
+    private static final String REPLICA = "ROUTING-REPLICA";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primaryDataSource;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private DataSource replicaDataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ReplicaLagMonitor lagMonitor;
+
+    @BeforeEach
+    void createReplicaHeartbeat() {
+        new JdbcTemplate(replicaDataSource).execute(
+                "create table if not exists " + ReplicaLagMonitor.TABLE + " (id int primary key, beat bigint not null)");
+    }
+
+    @AfterEach
+    void clearUser() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    @DisplayName("Read-only transactions use the replica only while it keeps up")
+    void lagAwareRouting() throws Exception {
+        lagMonitor.writeBeat();
+        replicate();
+        lagMonitor.checkReplica();
+
+        assertThat(lagMonitor.isReplicaUsable()).isTrue();
+        assertThat(databaseUsed(true)).isEqualTo(REPLICA);
+        assertThat(databaseUsed(false)).isEqualTo(PRIMARY);
+
+        // A beat the replica has not received for longer than max-lag-ms
+        lagMonitor.writeBeat();
+        Thread.sleep(300);
+        lagMonitor.checkReplica();
+
+        assertThat(lagMonitor.lagMillis()).isGreaterThanOrEqualTo(300);
+        assertThat(lagMonitor.isReplicaUsable()).isFalse();
+        assertThat(databaseUsed(true)).isEqualTo(PRIMARY);
+
+        replicate();
+        lagMonitor.checkReplica();
+
+        assertThat(lagMonitor.lagMillis()).isZero();
+        assertThat(databaseUsed(true)).isEqualTo(REPLICA);
+    }
+
+    @Test
+    @DisplayName("A user's reads stay on the primary after their own write")
+    void readYourWrites() {
+        lagMonitor.writeBeat();
+        replicate();
+        lagMonitor.checkReplica();
+
+        authenticate("writer@example.com");
+        assertThat(databaseUsed(true)).isEqualTo(REPLICA);
+        assertThat(databaseUsed(false)).isEqualTo(PRIMARY);
+        assertThat(databaseUsed(true)).isEqualTo(PRIMARY);
+
+        authenticate("reader@example.com");
+        assertThat(databaseUsed(true)).isEqualTo(REPLICA);
+    }
+
+    // Name of the database the transaction's connection was routed to
+    private String databaseUsed(boolean readOnly) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(readOnly);
+        return transaction.execute(status ->
+                new JdbcTemplate(dataSource).queryForObject("select database()", String.class));
+    }
+
+    // Copies the primary's heartbeat row to the replica, as replication would
+    private void replicate() {
+        long beat = new JdbcTemplate(primaryDataSource).queryForObject(
+                "select beat from " + ReplicaLagMonitor.TABLE + " where id = 1", Long.class);
+        new JdbcTemplate(replicaDataSource).update(
+                "merge into " + ReplicaLagMonitor.TABLE + " key (id) values (1, ?)", beat);
+    }
+
+    private void authenticate(String email) {
+        SecurityContextHolder.getContext().setAuthentication(
+                UsernamePasswordAuthenticationToken.authenticated(email, null, List.of()));
+    }
+}
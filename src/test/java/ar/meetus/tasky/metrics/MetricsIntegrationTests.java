@@ -0,0 +1,74 @@
+package ar.meetus.tasky.metrics;
+
+import ar.meetus.tasky.dto.RegisterRequest;
+import ar.meetus.tasky.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class MetricsIntegrationTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @AfterEach
+    void cleanUp() {
+        userRepository.findByEmail("metrics@example.com").ifPresent(userRepository::delete);
+    }
+
+    @Test
+    @DisplayName("Request path metrics are exposed for Prometheus without authentication")
+    void prometheusScrape() throws Exception {
+        RegisterRequest register = new RegisterRequest();
+        register.setName("Metrics");
+        register.setEmail("metrics@example.com");
+        register.setPassword("secret123");
+        String response = mockMvc.perform(post("/auth/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(register)))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+        String token = objectMapper.readTree(response).get("accessToken").asText();
+
+        mockMvc.perform(get("/tasks").header("Authorization", "Bearer " + token))
+            .andExpect(status().isOk());
+
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+
+        assertThat(scrape)
+            .contains("tasky_http_requests_seconds_count{endpoint=\"TaskController.getAllTasks\",outcome=\"success\"} 1")
+            .contains("tasky_http_requests_seconds_bucket{endpoint=\"AuthController.register\"")
+            .contains("tasky_auth_filter_seconds_count{stage=\"verify\"}")
+            .contains("tasky_password_hashing_seconds_count{operation=\"encode\"}")
+            .contains("tasky_hibernate_session_statements_count")
+            .contains("hibernate_query_executions")
+            .contains("hikaricp_connections_active")
+            // Spring-managed and standalone caches share one tag set, Prometheus would drop either otherwise
+            .contains("cache_gets_total{cache=\"users\",cache_manager=\"cacheManager\",name=\"users\",result=\"miss\"}")
+            .contains("cache_gets_total{cache=\"tasks.list\",cache_manager=\"tasky\",name=\"tasks.list\",result=\"miss\"} 1")
+            .contains("cache_gets_total{cache=\"jwt.tokens\",cache_manager=\"tasky\",name=\"jwt.tokens\",result=\"miss\"}");
+    }
+}
@@ -0,0 +1,102 @@
+package ar.meetus.tasky.metrics;
+
+import ar.meetus.tasky.dto.RegisterRequest;
+import ar.meetus.tasky.repository.UserRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Budget of one statement and every statement counted as slow, so any request touching the database is flagged
+@SpringBootTest(properties = {
+        "tasky.queries.statement-budget=1",
+        "tasky.queries.slow-threshold-ms=0",
+        "security.admin-emails=queries@example.com"
+})
+@AutoConfigureMockMvc
+class QueryInspectionIntegrationTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @AfterEach
+    void cleanUp() {
+        userRepository.findByEmail("queries@example.com").ifPresent(userRepository::delete);
+        userRepository.findByEmail("member@example.com").ifPresent(userRepository::delete);
+    }
+
+    @Test
+    @DisplayName("Actuator endpoints other than health and prometheus are for admins only")
+    void adminOnly() throws Exception {
+        String token = register("member@example.com");
+
+        mockMvc.perform(get("/actuator/queries").header("Authorization", "Bearer " + token))
+            .andExpect(status().isForbidden());
+        mockMvc.perform(delete("/actuator/queries").header("Authorization", "Bearer " + token))
+            .andExpect(status().isForbidden());
+        mockMvc.perform(get("/actuator/metrics").header("Authorization", "Bearer " + token))
+            .andExpect(status().isForbidden());
+        mockMvc.perform(get("/actuator/health"))
+            .andExpect(status().isOk());
+    }
+
+    @Test
+    @DisplayName("Requests over the statement budget and slow statements are reported at /actuator/queries")
+    void overBudgetAndSlowQueries() throws Exception {
+        String token = register("queries@example.com");
+
+        mockMvc.perform(delete("/actuator/queries").header("Authorization", "Bearer " + token))
+            .andExpect(status().isNoContent());
+        mockMvc.perform(post("/tasks")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"Task\"}"))
+            .andExpect(status().isCreated());
+
+        JsonNode report = objectMapper.readTree(mockMvc.perform(get("/actuator/queries")
+                .header("Authorization", "Bearer " + token))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString());
+
+        assertThat(report.get("statementBudget").asInt()).isEqualTo(1);
+        JsonNode request = report.get("overBudgetRequests").get(0);
+        assertThat(request.get("endpoint").asText()).isEqualTo("POST /tasks");
+        assertThat(request.get("statements").asInt()).isGreaterThan(1);
+        // Only the types of the bind parameters are sampled, never their values
+        assertThat(report.get("slowQueries")).anySatisfy(query -> {
+            assertThat(query.get("sql").asText()).startsWithIgnoringCase("insert into tasks");
+            assertThat(query.get("parameters").asText()).contains("String").doesNotContain("Task");
+        });
+    }
+
+    private String register(String email) throws Exception {
+        RegisterRequest register = new RegisterRequest();
+        register.setName("Queries");
+        register.setEmail(email);
+        register.setPassword("secret123");
+        String response = mockMvc.perform(post("/auth/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(register)))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(response).get("accessToken").asText();
+    }
+}
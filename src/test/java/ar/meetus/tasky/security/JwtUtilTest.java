@@ -0,0 +1,106 @@
+package ar.meetus.tasky.security;
+
+import ar.meetus.tasky.model.User;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JwtUtilTest {
+
+    private static final String SECRET = "mySecretKey123456789012345678901234567890";
+    private static final String NEXT_SECRET = "anotherSecretKey12345678901234567890123456";
+
+    private JwtUtil jwtUtil;
+    private User user;
+
+    @BeforeEach
+    void init() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 60_000L);
+        ReflectionTestUtils.setField(jwtUtil, "keyId", "k1");
+        ReflectionTestUtils.setField(jwtUtil, "additionalKeys", new String[0]);
+        ReflectionTestUtils.setField(jwtUtil, "tokenCache", new TokenCache(100, new SimpleMeterRegistry()));
+        jwtUtil.init();
+
+        user = new User("User", "user@example.com", "hash");
+        user.setId(7L);
+    }
+
+    @Test
+    @DisplayName("A generated token is parsed once into subject and expiration")
+    void parseToken() {
+        String token = jwtUtil.generateToken(user);
+
+        Claims claims = jwtUtil.parseToken(token);
+
+        assertThat(claims.getSubject()).isEqualTo("user@example.com");
+        assertThat(claims.getExpiration()).isAfter(new Date());
+        assertThat(jwtUtil.validateToken(token, user)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Tokens carry the user id and name for a stateless principal")
+    void principalFromClaims() {
+        JwtPrincipal principal = JwtPrincipal.fromClaims(jwtUtil.parseToken(jwtUtil.generateToken(user)));
+
+        assertThat(principal.getId()).isEqualTo(7L);
+        assertThat(principal.getUsername()).isEqualTo("user@example.com");
+        assertThat(principal.getName()).isEqualTo("User");
+    }
+
+    @Test
+    @DisplayName("Malformed Authorization headers are rejected before verification")
+    void malformedHeaders() {
+        assertThat(jwtUtil.extractBearerToken(null)).isNull();
+        assertThat(jwtUtil.extractBearerToken("Basic dXNlcjpwYXNz")).isNull();
+        assertThat(jwtUtil.extractBearerToken("Bearer ")).isNull();
+        assertThat(jwtUtil.extractBearerToken("Bearer abc.def")).isNull();
+        assertThat(jwtUtil.extractBearerToken("Bearer abc..ghi")).isNull();
+        assertThat(jwtUtil.extractBearerToken("Bearer a b.c.d")).isNull();
+        assertThat(jwtUtil.extractBearerToken("Bearer abc.def.ghi")).isEqualTo("abc.def.ghi");
+        assertThat(jwtUtil.parseToken("abc.def.ghi")).isNull();
+    }
+
+    @Test
+    @DisplayName("Tokens signed with a rotated out key stay valid until the key is removed")
+    void keyRotation() {
+        String oldToken = jwtUtil.generateToken(user);
+
+        jwtUtil.addKey("k2", NEXT_SECRET);
+        jwtUtil.activateKey("k2");
+        String newToken = jwtUtil.generateToken(user);
+
+        assertThat(jwtUtil.validateToken(oldToken)).isTrue();
+        assertThat(jwtUtil.validateToken(newToken)).isTrue();
+
+        jwtUtil.removeKey("k1");
+
+        assertThat(jwtUtil.validateToken(oldToken)).isFalse();
+        assertThat(jwtUtil.validateToken(newToken)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Tokens issued without a kid header are verified with jwt.secret")
+    void legacyTokenWithoutKeyId() {
+        String legacyToken = Jwts.builder()
+                .setSubject("user@example.com")
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)), SignatureAlgorithm.HS256)
+                .compact();
+
+        assertThat(jwtUtil.validateToken(legacyToken, user)).isTrue();
+        assertThat(JwtPrincipal.fromClaims(jwtUtil.parseToken(legacyToken))).isNull();
+    }
+}
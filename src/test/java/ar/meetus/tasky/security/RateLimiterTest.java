@@ -0,0 +1,53 @@
+package ar.meetus.tasky.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong(-5_000);
+    private RateLimiter rateLimiter;
+
+    @BeforeEach
+    void init() {
+        // One permit per second, bursts of three
+        rateLimiter = new RateLimiter(60, 3, clock::get);
+    }
+
+    @Test
+    @DisplayName("A full bucket grants the burst, then one permit per interval")
+    void burstThenRefill() {
+        assertThat(rateLimiter.tryAcquire("user")).isZero();
+        assertThat(rateLimiter.tryAcquire("user")).isZero();
+        assertThat(rateLimiter.tryAcquire("user")).isZero();
+
+        long wait = rateLimiter.tryAcquire("user");
+        assertThat(wait).isEqualTo(TimeUnit.SECONDS.toNanos(1));
+        assertThat(rateLimiter.tryAcquire("other")).isZero();
+
+        clock.addAndGet(wait);
+        assertThat(rateLimiter.tryAcquire("user")).isZero();
+        assertThat(rateLimiter.tryAcquire("user")).isPositive();
+    }
+
+    @Test
+    @DisplayName("Buckets are evicted once they have refilled")
+    void evictIdle() {
+        rateLimiter.tryAcquire("user");
+        rateLimiter.tryAcquire("user");
+
+        rateLimiter.evictIdle();
+        assertThat(rateLimiter.size()).isEqualTo(1);
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        rateLimiter.evictIdle();
+        assertThat(rateLimiter.size()).isZero();
+        assertThat(rateLimiter.tryAcquire("user")).isZero();
+    }
+}
@@ -0,0 +1,59 @@
+package ar.meetus.tasky.security;
+
+import ar.meetus.tasky.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private TokenCache tokenCache;
+    private User user;
+
+    @BeforeEach
+    void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        tokenCache = new TokenCache(100, meterRegistry);
+        user = new User("User", "user@example.com", "hash");
+    }
+
+    @Test
+    @DisplayName("Cached principal is returned for the same token and counted as a hit")
+    void hitAfterPut() {
+        assertThat(tokenCache.get("token")).isNull();
+
+        tokenCache.put("token", user, new Date(System.currentTimeMillis() + 60_000));
+
+        assertThat(tokenCache.get("token")).isSameAs(user);
+        assertThat(tokenCache.get("other")).isNull();
+        assertThat(meterRegistry.get("cache.gets").tags("cache", "jwt.tokens", "result", "hit")
+                .functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tags("cache", "jwt.tokens", "result", "miss")
+                .functionCounter().count()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Entries are not served once the token has expired")
+    void expiredTokenIsEvicted() throws InterruptedException {
+        tokenCache.put("token", user, new Date(System.currentTimeMillis() + 50));
+        assertThat(tokenCache.get("token")).isSameAs(user);
+
+        Thread.sleep(100);
+
+        assertThat(tokenCache.get("token")).isNull();
+    }
+
+    @Test
+    @DisplayName("Already expired tokens are never cached")
+    void expiredTokenIsNotCached() {
+        tokenCache.put("token", user, new Date(System.currentTimeMillis() - 1));
+
+        assertThat(tokenCache.get("token")).isNull();
+    }
+}
@@ -1,23 +1,38 @@
 package ar.meetus.tasky.service;
 
+import ar.meetus.tasky.dto.TaskPatchItem;
 import ar.meetus.tasky.dto.TaskRequest;
 import ar.meetus.tasky.dto.TaskResponse;
 import ar.meetus.tasky.model.Task;
 import ar.meetus.tasky.model.User;
-import ar.meetus.tasky.repository.TaskRepository;
 import ar.meetus.tasky.repository.UserRepository;
+import ar.meetus.tasky.security.JwtPrincipal;
+import ar.meetus.tasky.store.TaskStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
@@ -25,11 +40,20 @@ import static org.mockito.Mockito.*;
 class TaskServiceUnitTest {
 
     @Mock
-    private TaskRepository taskRepository;
+    private TaskStore taskStore;
 
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private TaskVersionStore taskVersionStore;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    private TaskListCache taskListCache = new TaskListCache(1_000_000, Duration.ofMinutes(1), new SimpleMeterRegistry());
+
     @Mock
     private SecurityContext securityContext;
 
@@ -39,6 +63,12 @@ class TaskServiceUnitTest {
     @InjectMocks
     private TaskService taskService;
 
+    @Captor
+    private ArgumentCaptor<List<TaskRequest>> requestsCaptor;
+
+    @Captor
+    private ArgumentCaptor<List<TaskPatchItem>> itemsCaptor;
+
     private User user;
 
     @BeforeEach
@@ -61,33 +91,25 @@ class TaskServiceUnitTest {
         request.setTitle("Sample");
         // no status set
 
-        ArgumentCaptor<Task> captor = ArgumentCaptor.forClass(Task.class);
-        when(taskRepository.save(any(Task.class))).thenAnswer(inv -> {
-            Task t = inv.getArgument(0);
-            t.setId(10L);
-            return t;
+        when(taskStore.create(eq(1L), anyList())).thenAnswer(inv -> {
+            TaskRequest stored = inv.<List<TaskRequest>>getArgument(1).get(0);
+            return TaskStore.TaskWrite.of(1L,
+                    List.of(new TaskResponse(10L, stored.getTitle(), stored.getDescription(), stored.getStatus())));
         });
 
         TaskResponse response = taskService.createTask(request);
 
-        verify(taskRepository).save(captor.capture());
-        Task saved = captor.getValue();
-        assertThat(saved.getStatus()).isEqualTo(Task.TaskStatus.OPEN);
+        verify(taskStore).create(eq(1L), requestsCaptor.capture());
+        assertThat(requestsCaptor.getValue().get(0).getStatus()).isEqualTo(Task.TaskStatus.OPEN);
         assertThat(response.getStatus()).isEqualTo(Task.TaskStatus.OPEN);
+        verify(eventPublisher).publishEvent(new TaskChangedEvent(1L, TaskChangedEvent.Type.CREATED, List.of(10L), 1L));
     }
 
     @Test
-    @DisplayName("updateTask updates only provided fields")
+    @DisplayName("updateTask passes only the provided fields to the store")
     void updateTaskPartial() {
-        Task existing = new Task();
-        existing.setId(5L);
-        existing.setTitle("Old");
-        existing.setDescription("Desc");
-        existing.setStatus(Task.TaskStatus.OPEN);
-        existing.setUser(user);
-
-        when(taskRepository.findByIdAndUserId(5L, user.getId())).thenReturn(Optional.of(existing));
-        when(taskRepository.save(any(Task.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(taskStore.update(eq(1L), anyList()))
+                .thenReturn(TaskStore.TaskWrite.of(2L, List.of(new TaskResponse(5L, "New Title", "Desc", Task.TaskStatus.IN_PROGRESS))));
 
         TaskRequest update = new TaskRequest();
         update.setTitle("New Title");
@@ -96,8 +118,74 @@ class TaskServiceUnitTest {
 
         TaskResponse response = taskService.updateTask(5L, update);
 
-        assertThat(response.getTitle()).isEqualTo("New Title");
+        verify(taskStore).update(eq(1L), itemsCaptor.capture());
+        TaskPatchItem item = itemsCaptor.getValue().get(0);
+        assertThat(item.getId()).isEqualTo(5L);
+        assertThat(item.getTitle()).isEqualTo("New Title");
+        assertThat(item.getDescription()).isNull();
+        assertThat(item.getStatus()).isEqualTo(Task.TaskStatus.IN_PROGRESS);
         assertThat(response.getDescription()).isEqualTo("Desc");
-        assertThat(response.getStatus()).isEqualTo(Task.TaskStatus.IN_PROGRESS);
+    }
+
+    @Test
+    @DisplayName("Tasks are looked up by the principal's user id without querying users")
+    void principalUserIdSkipsUserLookup() {
+        when(authentication.getPrincipal()).thenReturn(new JwtPrincipal(1L, "user@example.com", "User"));
+        when(taskStore.findAll(1L))
+                .thenReturn(List.of(new TaskResponse(3L, "Sample", null, Task.TaskStatus.OPEN)));
+
+        List<TaskResponse> tasks = taskService.getAllTasks();
+
+        assertThat(tasks).extracting(TaskResponse::getId).containsExactly(3L);
+        verify(userRepository, never()).findByEmail(anyString());
+    }
+
+    @Test
+    @DisplayName("Repeated and concurrent reads load the task list once until a write invalidates it")
+    void taskListIsCachedUntilChanged() throws Exception {
+        when(authentication.getPrincipal()).thenReturn(new JwtPrincipal(1L, "user@example.com", "User"));
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch loading = new CountDownLatch(1);
+        when(taskStore.findAll(1L)).thenAnswer(inv -> {
+            entered.countDown();
+            loading.await(5, TimeUnit.SECONDS);
+            return List.of(new TaskResponse(3L, "Sample", null, Task.TaskStatus.OPEN));
+        });
+
+        List<Thread> readers = new CopyOnWriteArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(4, runnable -> {
+            Thread thread = new Thread(runnable);
+            readers.add(thread);
+            return thread;
+        });
+        try {
+            List<Future<List<TaskResponse>>> reads = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                reads.add(executor.submit(() -> {
+                    SecurityContextHolder.setContext(securityContext);
+                    return taskService.getAllTasks();
+                }));
+            }
+            // One reader is inside the loader, the other three must be blocked on the same cache entry behind it
+            assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (readers.stream().filter(reader -> reader.getState() == Thread.State.BLOCKED).count() < 3) {
+                assertThat(System.nanoTime()).isLessThan(deadline);
+                Thread.sleep(1);
+            }
+            verify(taskStore, times(1)).findAll(1L);
+            loading.countDown();
+            for (Future<List<TaskResponse>> read : reads) {
+                assertThat(read.get()).extracting(TaskResponse::getId).containsExactly(3L);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        taskService.getAllTasks();
+        verify(taskStore, times(1)).findAll(1L);
+
+        taskListCache.onTaskChanged(new TaskChangedEvent(1L, TaskChangedEvent.Type.UPDATED, List.of(3L), 1L));
+        taskService.getAllTasks();
+        verify(taskStore, times(2)).findAll(1L);
     }
 }
@@ -0,0 +1,80 @@
+package ar.meetus.tasky.store;
+
+import ar.meetus.tasky.dto.TaskPatchItem;
+import ar.meetus.tasky.dto.TaskRequest;
+import ar.meetus.tasky.dto.TaskResponse;
+import ar.meetus.tasky.model.Task;
+import ar.meetus.tasky.model.User;
+import ar.meetus.tasky.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@SpringBootTest(properties = "tasks.store.engine=jpa")
+@Transactional
+class JpaTaskStoreTest {
+
+    @Autowired
+    private JpaTaskStore store;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Long userId;
+
+    @BeforeEach
+    void createUser() {
+        userId = userRepository.save(new User("Store", "store@example.com", "password")).getId();
+    }
+
+    @Test
+    @DisplayName("Updates and patches apply only the provided fields")
+    void partialUpdates() {
+        List<Long> ids = store.create(userId, List.of(
+                new TaskRequest("First", "First description", Task.TaskStatus.OPEN),
+                new TaskRequest("Second", "Second description", Task.TaskStatus.OPEN))).taskIds();
+
+        TaskStore.TaskWrite write = store.update(userId, List.of(
+                new TaskPatchItem(ids.get(0), "First renamed", null, null),
+                new TaskPatchItem(ids.get(1), null, null, Task.TaskStatus.DONE)));
+        assertThat(write.tasks()).extracting(TaskResponse::getTitle, TaskResponse::getDescription, TaskResponse::getStatus)
+                .containsExactly(
+                        tuple("First renamed", "First description", Task.TaskStatus.OPEN),
+                        tuple("Second", "Second description", Task.TaskStatus.DONE));
+
+        store.patch(userId, ids.get(0), new TaskRequest(null, "Patched description", null));
+
+        assertThat(store.findAll(userId))
+                .extracting(TaskResponse::getTitle, TaskResponse::getDescription, TaskResponse::getStatus)
+                .containsExactly(
+                        tuple("First renamed", "Patched description", Task.TaskStatus.OPEN),
+                        tuple("Second", "Second description", Task.TaskStatus.DONE));
+    }
+
+    @Test
+    @DisplayName("A patch bumps the version and updates the task in two statements")
+    void patchRoundTrips() {
+        long id = store.create(userId, List.of(new TaskRequest("Task", null, Task.TaskStatus.OPEN))).taskIds().get(0);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        long version = store.patch(userId, id, new TaskRequest(null, null, Task.TaskStatus.DONE));
+
+        assertThat(version).isEqualTo(2L);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,196 @@
+package ar.meetus.tasky.store;
+
+import ar.meetus.tasky.dto.TaskChangesResponse;
+import ar.meetus.tasky.dto.TaskPatchItem;
+import ar.meetus.tasky.dto.TaskRequest;
+import ar.meetus.tasky.dto.TaskResponse;
+import ar.meetus.tasky.exception.ResourceNotFoundException;
+import ar.meetus.tasky.model.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class MemoryTaskStoreTest {
+
+    private static final Duration RETENTION = Duration.ofDays(30);
+
+    @TempDir
+    Path directory;
+
+    private final List<MemoryTaskStore> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeStores() {
+        opened.forEach(MemoryTaskStore::close);
+    }
+
+    @Test
+    @DisplayName("Updates apply only the provided fields and failed writes change nothing")
+    void partialUpdates() throws IOException {
+        MemoryTaskStore store = open();
+        long id = store.create(1L, List.of(new TaskRequest("Old", "Desc", Task.TaskStatus.OPEN))).taskIds().get(0);
+
+        TaskStore.TaskWrite write = store.update(1L, List.of(new TaskPatchItem(id, "New Title", null, Task.TaskStatus.DONE)));
+
+        assertThat(write.version()).isEqualTo(2L);
+        TaskResponse updated = write.tasks().get(0);
+        assertThat(updated.getTitle()).isEqualTo("New Title");
+        assertThat(updated.getDescription()).isEqualTo("Desc");
+        assertThat(updated.getStatus()).isEqualTo(Task.TaskStatus.DONE);
+
+        // Another user's task and a batch with a missing task are rejected as a whole
+        assertThatThrownBy(() -> store.patch(2L, id, new TaskRequest("Stolen", null, null)))
+                .isInstanceOf(ResourceNotFoundException.class);
+        assertThatThrownBy(() -> store.delete(1L, List.of(id, id + 100)))
+                .isInstanceOf(ResourceNotFoundException.class);
+        assertThat(store.findAll(1L)).extracting(TaskResponse::getTitle).containsExactly("New Title");
+        assertThat(store.findChangesSince(1L, 2L).getVersion()).isEqualTo(2L);
+    }
+
+    @Test
+    @DisplayName("Pages and change sets match the JPA engine's ordering")
+    void pagesAndChanges() throws IOException {
+        MemoryTaskStore store = open();
+        List<Long> ids = store.create(1L, List.of(
+                new TaskRequest("A", null, Task.TaskStatus.OPEN),
+                new TaskRequest("B", null, Task.TaskStatus.DONE),
+                new TaskRequest("C", null, Task.TaskStatus.OPEN))).taskIds();
+        store.patch(1L, ids.get(0), new TaskRequest(null, null, Task.TaskStatus.IN_PROGRESS));
+        store.delete(1L, List.of(ids.get(1)));
+
+        assertThat(store.findPage(1L, null, null, false, 10)).extracting(TaskResponse::getTitle).containsExactly("A", "C");
+        assertThat(store.findPage(1L, null, null, true, 1)).extracting(TaskResponse::getTitle).containsExactly("C");
+        assertThat(store.findPage(1L, Task.TaskStatus.OPEN, ids.get(0), false, 10)).extracting(TaskResponse::getTitle).containsExactly("C");
+
+        TaskChangesResponse changes = store.findChangesSince(1L, 1L);
+        assertThat(changes.getVersion()).isEqualTo(3L);
+        assertThat(changes.getTasks()).extracting(TaskResponse::getTitle).containsExactly("A");
+        assertThat(changes.getDeleted()).containsExactly(ids.get(1));
+    }
+
+    @Test
+    @DisplayName("Acknowledged writes survive a crash through the log, after a snapshot too")
+    void recoversFromSnapshotAndLog() throws IOException {
+        MemoryTaskStore crashed = new MemoryTaskStore(directory, true, 16, RETENTION);
+        crashed.recover();
+        long first = crashed.create(1L, List.of(new TaskRequest("Before snapshot", null, Task.TaskStatus.OPEN))).taskIds().get(0);
+        crashed.checkpoint();
+        crashed.create(1L, List.of(new TaskRequest("After snapshot", "Logged", Task.TaskStatus.OPEN)));
+        crashed.patch(1L, first, new TaskRequest(null, null, Task.TaskStatus.DONE));
+        crashed.create(2L, List.of(new TaskRequest("Other user", null, Task.TaskStatus.OPEN)));
+        // No close: the store is dropped as if the process died, only the fsynced log and snapshot remain
+
+        MemoryTaskStore recovered = open();
+
+        assertThat(recovered.findAll(1L)).extracting(TaskResponse::getTitle, TaskResponse::getStatus)
+                .containsExactly(
+                        tuple("Before snapshot", Task.TaskStatus.DONE),
+                        tuple("After snapshot", Task.TaskStatus.OPEN));
+        assertThat(recovered.findAll(2L)).hasSize(1);
+        assertThat(recovered.findChangesSince(1L, 0L).getVersion()).isEqualTo(3L);
+        // Ids keep increasing after recovery
+        long next = recovered.create(1L, List.of(new TaskRequest("New", null, Task.TaskStatus.OPEN))).taskIds().get(0);
+        assertThat(next).isGreaterThan(first + 2);
+    }
+
+    @Test
+    @DisplayName("A torn record at the end of the log is ignored on recovery")
+    void tornTail() throws IOException {
+        MemoryTaskStore crashed = new MemoryTaskStore(directory, true, 16, RETENTION);
+        crashed.recover();
+        crashed.create(1L, List.of(new TaskRequest("Durable", null, Task.TaskStatus.OPEN)));
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(path -> path.getFileName().toString().endsWith(".log")).findFirst().orElseThrow();
+        }
+        Files.write(segment, new byte[] {0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        MemoryTaskStore recovered = open();
+
+        assertThat(recovered.findAll(1L)).extracting(TaskResponse::getTitle).containsExactly("Durable");
+        assertThat(recovered.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("A clean shutdown leaves a single snapshot and an empty log segment")
+    void checkpointOnClose() throws IOException {
+        MemoryTaskStore store = new MemoryTaskStore(directory, true, 16, RETENTION);
+        store.recover();
+        store.create(1L, List.of(new TaskRequest("Task", null, Task.TaskStatus.OPEN)));
+        store.close();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.map(path -> path.getFileName().toString()).sorted())
+                    .containsExactly("snapshot-2.bin", "tasks-2.log");
+        }
+        assertThat(open().findAll(1L)).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("A write the log rejects is never applied")
+    void rejectedWritesAreNotApplied() throws IOException {
+        MemoryTaskStore store = new MemoryTaskStore(directory, true, 16, RETENTION);
+        store.recover();
+        long id = store.create(1L, List.of(new TaskRequest("Kept", null, Task.TaskStatus.OPEN))).taskIds().get(0);
+        store.close();
+
+        assertThatThrownBy(() -> store.create(1L, List.of(new TaskRequest("Lost", null, Task.TaskStatus.OPEN))))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> store.delete(1L, List.of(id)))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(store.findAll(1L)).extracting(TaskResponse::getTitle).containsExactly("Kept");
+        assertThat(store.findChangesSince(1L, 0L).getVersion()).isEqualTo(1L);
+        assertThat(open().findAll(1L)).extracting(TaskResponse::getTitle).containsExactly("Kept");
+    }
+
+    @Test
+    @DisplayName("Purged tombstones raise the horizon, older syncs reset and the purge survives a restart")
+    void purgesTombstones() throws IOException {
+        MemoryTaskStore store = new MemoryTaskStore(directory, true, 16, RETENTION);
+        store.recover();
+        List<Long> ids = store.create(1L, List.of(
+                new TaskRequest("Kept", null, Task.TaskStatus.OPEN),
+                new TaskRequest("Deleted", null, Task.TaskStatus.OPEN))).taskIds();
+        store.delete(1L, List.of(ids.get(1)));
+
+        assertThat(store.purgeTombstonesDeletedBefore(Instant.now().minus(RETENTION))).isZero();
+        assertThat(store.purgeTombstonesDeletedBefore(Instant.now().plusSeconds(1))).isEqualTo(1);
+
+        TaskChangesResponse stale = store.findChangesSince(1L, 1L);
+        assertThat(stale.isReset()).isTrue();
+        assertThat(stale.getTasks()).extracting(TaskResponse::getTitle).containsExactly("Kept");
+        assertThat(stale.getDeleted()).isEmpty();
+        store.close();
+
+        MemoryTaskStore recovered = open();
+        assertThat(recovered.findChangesSince(1L, 1L).isReset()).isTrue();
+        assertThat(recovered.findChangesSince(1L, 0L).isReset()).isFalse();
+        recovered.delete(1L, List.of(ids.get(0)));
+        TaskChangesResponse delta = recovered.findChangesSince(1L, 2L);
+        assertThat(delta.isReset()).isFalse();
+        assertThat(delta.getDeleted()).containsExactly(ids.get(0));
+    }
+
+    private MemoryTaskStore open() throws IOException {
+        MemoryTaskStore store = new MemoryTaskStore(directory, true, 16, RETENTION);
+        store.recover();
+        opened.add(store);
+        return store;
+    }
+}
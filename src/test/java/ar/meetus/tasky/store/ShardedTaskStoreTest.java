@@ -0,0 +1,189 @@
+package ar.meetus.tasky.store;
+
+import ar.meetus.tasky.dto.TaskChangesResponse;
+import ar.meetus.tasky.dto.TaskPatchItem;
+import ar.meetus.tasky.dto.TaskRequest;
+import ar.meetus.tasky.dto.TaskResponse;
+import ar.meetus.tasky.exception.ResourceNotFoundException;
+import ar.meetus.tasky.model.Task;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ShardedTaskStoreTest {
+
+    private final String run = UUID.randomUUID().toString();
+    private final DataSource directory = database("directory");
+
+    @Test
+    @DisplayName("Users are spread over the shards and only see their own tasks")
+    void usersAreSpreadOverShards() {
+        ShardedTaskStore store = new ShardedTaskStore(directory, shards(3));
+
+        for (long userId = 1; userId <= 30; userId++) {
+            store.create(userId, List.of(new TaskRequest("Task of " + userId, null, Task.TaskStatus.OPEN)));
+        }
+
+        assertThat(store.stats()).allSatisfy(stats -> assertThat(stats.users()).isPositive());
+        assertThat(store.stats().stream().mapToLong(ShardedTaskStore.ShardStats::tasks).sum()).isEqualTo(30);
+        for (long userId = 1; userId <= 30; userId++) {
+            assertThat(store.findAll(userId)).extracting(TaskResponse::getTitle).containsExactly("Task of " + userId);
+        }
+
+        long id = store.findAll(1L).get(0).getId();
+        assertThatThrownBy(() -> store.patch(2L, id, new TaskRequest("Stolen", null, null)))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    @DisplayName("A moved user keeps their tasks, deletions and change version")
+    void moveKeepsData() {
+        ShardedTaskStore store = new ShardedTaskStore(directory, shards(2));
+        long userId = 7L;
+        List<Long> ids = store.create(userId, List.of(
+                new TaskRequest("One", "First", Task.TaskStatus.OPEN),
+                new TaskRequest("Two", null, Task.TaskStatus.IN_PROGRESS),
+                new TaskRequest("Three", null, Task.TaskStatus.DONE))).taskIds();
+        store.update(userId, List.of(new TaskPatchItem(ids.get(0), "One edited", null, null)));
+        long version = store.delete(userId, List.of(ids.get(1))).version();
+        List<TaskResponse> before = store.findAll(userId);
+
+        int source = store.shardOf(userId);
+        assertThat(store.move(userId, 1 - source)).isTrue();
+        assertThat(store.move(userId, 1 - source)).isFalse();
+
+        assertThat(store.shardOf(userId)).isEqualTo(1 - source);
+        assertThat(store.findAll(userId)).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(before);
+        TaskChangesResponse after = store.findChangesSince(userId, 0);
+        assertThat(after.getVersion()).isEqualTo(version);
+        assertThat(after.getDeleted()).containsExactly(ids.get(1));
+        assertThat(store.stats().get(source).tasks()).isZero();
+
+        // Versions continue on the new shard, and new ids do not collide with the moved ones
+        TaskStore.TaskWrite write = store.create(userId, List.of(new TaskRequest("Four", null, Task.TaskStatus.OPEN)));
+        assertThat(write.version()).isEqualTo(version + 1);
+        assertThat(write.taskIds()).doesNotContainAnyElementsOf(ids);
+        assertThat(store.findChangesSince(userId, version).getTasks()).extracting(TaskResponse::getTitle)
+                .containsExactly("Four");
+    }
+
+    @Test
+    @DisplayName("Purged tombstones raise the horizon, which moves with the user")
+    void purgedTombstonesResetOlderSyncs() {
+        ShardedTaskStore store = new ShardedTaskStore(directory, shards(2));
+        long userId = 5L;
+        List<Long> ids = store.create(userId, List.of(
+                new TaskRequest("Kept", null, Task.TaskStatus.OPEN),
+                new TaskRequest("Deleted", null, Task.TaskStatus.OPEN))).taskIds();
+        store.delete(userId, List.of(ids.get(1)));
+
+        assertThat(store.purgeTombstonesDeletedBefore(Instant.now().minusSeconds(60))).isZero();
+        assertThat(store.purgeTombstonesDeletedBefore(Instant.now().plusSeconds(1))).isEqualTo(1);
+        assertThat(store.move(userId, 1 - store.shardOf(userId))).isTrue();
+
+        TaskChangesResponse stale = store.findChangesSince(userId, 1);
+        assertThat(stale.isReset()).isTrue();
+        assertThat(stale.getTasks()).extracting(TaskResponse::getTitle).containsExactly("Kept");
+        assertThat(stale.getDeleted()).isEmpty();
+        assertThat(store.findChangesSince(userId, 2).isReset()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Another instance's writes follow a user moved while they are running")
+    void moveUnderConcurrentWritesFromAnotherInstance() throws Exception {
+        List<DataSource> shards = shards(2);
+        ShardedTaskStore writer = new ShardedTaskStore(directory, shards);
+        ShardedTaskStore mover = new ShardedTaskStore(directory, shards);
+        long userId = 11L;
+        writer.create(userId, List.of(new TaskRequest("Before", null, Task.TaskStatus.OPEN)));
+        int source = writer.shardOf(userId);
+
+        List<Long> written = new CopyOnWriteArrayList<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> writes = executor.submit(() -> {
+                for (int i = 0; i < 200; i++) {
+                    written.addAll(writer.create(userId,
+                            List.of(new TaskRequest("Task " + i, null, Task.TaskStatus.OPEN))).taskIds());
+                }
+            });
+            while (written.size() < 20) {
+                Thread.sleep(1);
+            }
+            assertThat(mover.move(userId, 1 - source)).isTrue();
+            writes.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        // The writer only learns about the move from the fence on the old shard
+        assertThat(writer.findAll(userId)).hasSize(201);
+        assertThat(writer.findAll(userId)).extracting(TaskResponse::getId).containsAll(written);
+        assertThat(writer.shardOf(userId)).isEqualTo(1 - source);
+        assertThat(writer.stats().get(source).tasks()).isZero();
+        assertThat(writer.findChangesSince(userId, 0).getVersion()).isEqualTo(201);
+    }
+
+    @Test
+    @DisplayName("Placements survive a restart and rebalancing moves users onto an added shard")
+    void rebalanceAfterAddingShard() {
+        List<DataSource> shards = new ArrayList<>(shards(2));
+        ShardedTaskStore store = new ShardedTaskStore(directory, shards);
+        LongStream.rangeClosed(1, 40).forEach(userId -> store.create(userId, List.of(
+                new TaskRequest("A" + userId, null, Task.TaskStatus.OPEN),
+                new TaskRequest("B" + userId, null, Task.TaskStatus.DONE))));
+
+        shards.add(database("shard2"));
+        ShardedTaskStore grown = new ShardedTaskStore(directory, shards);
+        assertThat(grown.stats().get(2).users()).isZero();
+        LongStream.rangeClosed(1, 40).forEach(userId -> assertThat(grown.findAll(userId)).hasSize(2));
+
+        int moved = grown.rebalance();
+
+        assertThat(moved).isPositive();
+        assertThat(grown.stats()).allSatisfy(stats -> assertThat(stats.users()).isPositive());
+        assertThat(grown.stats()).allSatisfy(stats -> assertThat(stats.tasks()).isEqualTo(2 * stats.users()));
+        LongStream.rangeClosed(1, 40).forEach(userId -> {
+            assertThat(grown.shardOf(userId)).isEqualTo(grown.home(userId));
+            assertThat(grown.findAll(userId)).extracting(TaskResponse::getTitle)
+                    .containsExactly("A" + userId, "B" + userId);
+        });
+        assertThat(grown.rebalance()).isZero();
+
+        // Fewer shards than the directory refers to is a configuration error
+        assertThatThrownBy(() -> new ShardedTaskStore(directory, shards.subList(0, 2)))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private List<DataSource> shards(int count) {
+        List<DataSource> shards = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            shards.add(database("shard" + i));
+        }
+        return shards;
+    }
+
+    private DataSource database(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + "-" + run + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        new JdbcTemplate(dataSource).execute("select 1");
+        return dataSource;
+    }
+}
@@ -0,0 +1,90 @@
+package ar.meetus.tasky.store;
+
+import ar.meetus.tasky.dto.TaskRequest;
+import ar.meetus.tasky.model.Task;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Task writes per second with 1, 2 and 4 file-backed H2 shards, each in its own directory and pool.
+// Run with: ./mvnw test -Dtest=ShardedTaskStoreThroughputTest -Dbenchmark=true
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ShardedTaskStoreThroughputTest {
+
+    private static final int WRITERS = 16;
+    private static final int USERS_PER_WRITER = 25;
+    private static final int WRITES_PER_USER = 40;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Write throughput by number of shards")
+    void writeThroughput() throws Exception {
+        List<Double> throughput = new ArrayList<>();
+        for (int shards : new int[] {1, 2, 4}) {
+            double tasksPerSecond = run(shards);
+            throughput.add(tasksPerSecond);
+            System.out.printf("%d shard(s): %.0f tasks/s%n", shards, tasksPerSecond);
+        }
+        assertThat(throughput).allSatisfy(tasksPerSecond -> assertThat(tasksPerSecond).isPositive());
+    }
+
+    private double run(int shardCount) throws Exception {
+        List<HikariDataSource> pools = new ArrayList<>();
+        HikariDataSource main = pool("main-" + shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            pools.add(pool(shardCount + "-shard" + i));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        try {
+            ShardedTaskStore store = new ShardedTaskStore(main, pools);
+            List<TaskRequest> task = List.of(new TaskRequest("Task", "Written by the benchmark", Task.TaskStatus.OPEN));
+            // Warm up every shard's pool and statements
+            for (long userId = 1_000_000; userId < 1_000_100; userId++) {
+                store.create(userId, task);
+            }
+
+            long started = System.nanoTime();
+            List<Future<?>> writers = new ArrayList<>();
+            for (int writer = 0; writer < WRITERS; writer++) {
+                long firstUser = (long) writer * USERS_PER_WRITER + 1;
+                writers.add(executor.submit(() -> {
+                    for (int write = 0; write < WRITES_PER_USER; write++) {
+                        for (long userId = firstUser; userId < firstUser + USERS_PER_WRITER; userId++) {
+                            store.create(userId, task);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+            long tasks = (long) WRITERS * USERS_PER_WRITER * WRITES_PER_USER;
+            return tasks * 1e9 / (System.nanoTime() - started);
+        } finally {
+            executor.shutdown();
+            pools.forEach(HikariDataSource::close);
+            main.close();
+        }
+    }
+
+    private HikariDataSource pool(String name) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setJdbcUrl("jdbc:h2:" + directory.resolve(name).toAbsolutePath());
+        pool.setUsername("sa");
+        pool.setMaximumPoolSize(WRITERS);
+        return pool;
+    }
+}
@@ -2,7 +2,15 @@ package ar.meetus.tasky.task;
 
 import ar.meetus.tasky.dto.LoginRequest;
 import ar.meetus.tasky.dto.RegisterRequest;
+import ar.meetus.tasky.dto.TaskBatchDeleteRequest;
+import ar.meetus.tasky.dto.TaskBatchPatchRequest;
+import ar.meetus.tasky.dto.TaskBatchRequest;
+import ar.meetus.tasky.dto.TaskPatchItem;
 import ar.meetus.tasky.dto.TaskRequest;
+import ar.meetus.tasky.model.Task;
+import ar.meetus.tasky.repository.UserRepository;
+import ar.meetus.tasky.store.ShardedTaskStore;
+import ar.meetus.tasky.store.TaskStore;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
@@ -13,11 +21,22 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -31,6 +50,12 @@ class TaskIntegrationTests {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TaskStore taskStore;
+
     private RegisterRequest registerRequest;
     private LoginRequest loginRequest;
 
@@ -118,6 +143,412 @@ class TaskIntegrationTests {
         assertThat(listNode.size()).isZero();
     }
 
+    private Long createTask(String token, String title, Task.TaskStatus status) throws Exception {
+        TaskRequest request = new TaskRequest(title, null, status);
+        String response = mockMvc.perform(post("/tasks")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("Authorization", "Bearer " + token)
+                .content(objectMapper.writeValueAsString(request)))
+            .andExpect(status().isCreated())
+            .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(response).get("id").asLong();
+    }
+
+    @Test
+    @DisplayName("Tasks are paged by cursor and filtered by status")
+    void keysetPagination() throws Exception {
+        String token = obtainToken();
+        Long first = createTask(token, "One", Task.TaskStatus.OPEN);
+        Long second = createTask(token, "Two", Task.TaskStatus.DONE);
+        Long third = createTask(token, "Three", Task.TaskStatus.OPEN);
+
+        String nextCursor = mockMvc.perform(get("/tasks")
+                .param("limit", "2")
+                .header("Authorization", "Bearer " + token))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$[0].id").value(first))
+            .andExpect(jsonPath("$[1].id").value(second))
+            .andReturn().getResponse().getHeader("X-Next-Cursor");
+        assertThat(nextCursor).isEqualTo(second.toString());
+
+        mockMvc.perform(get("/tasks")
+                .param("limit", "2")
+                .param("cursor", nextCursor)
+                .header("Authorization", "Bearer " + token))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].id").value(third))
+            .andExpect(header().doesNotExist("X-Next-Cursor"));
+
+        mockMvc.perform(get("/tasks")
+                .param("status", "OPEN")
+                .param("sort", "desc")
+                .header("Authorization", "Bearer " + token))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$[0].id").value(third))
+            .andExpect(jsonPath("$[1].id").value(first));
+    }
+
+    @Test
+    @DisplayName("PATCH only changes the given fields and missing tasks return 404")
+    void patchAndDeleteMissingTask() throws Exception {
+        String token = obtainToken();
+        Long taskId = createTask(token, "Title", Task.TaskStatus.OPEN);
+
+        mockMvc.perform(patch("/tasks/" + taskId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("Authorization", "Bearer " + token)
+                .content("{\"status\":\"DONE\"}"))
+            .andExpect(status().isOk());
+
+        mockMvc.perform(get("/tasks")
+                .header("Authorization", "Bearer " + token))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].title").value("Title"))
+            .andExpect(jsonPath("$[0].status").value("DONE"));
+
+        mockMvc.perform(patch("/tasks/" + taskId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("Authorization", "Bearer " + token)
+                .content("{\"title\":\"  \"}"))
+            .andExpect(status().isBadRequest());
+
+        mockMvc.perform(patch("/tasks/" + (taskId + 1000))
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("Authorization", "Bearer " + token)
+                .content("{\"status\":\"DONE\"}"))
+            .andExpect(status().isNotFound());
+
+        mockMvc.perform(delete("/tasks/" + (taskId + 1000))
+                .header("Authorization", "Bearer " + token))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("Tasks are created, patched and deleted in batches")
+    void batchOperations() throws Exception {
+        String token = obtainToken();
+
+        TaskBatchRequest create = new TaskBatchRequest(List.of(
+                new TaskRequest("One", null, null),
+                new TaskRequest("Two", "Second", Task.TaskStatus.IN_PROGRESS)));
+        String createResponse = mockMvc.perform(post("/tasks/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("Authorization", "Bearer " + token)
+                .content(objectMapper.writeValueAsString(create)))
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$[0].status").value("OPEN"))
+            .andReturn().getResponse().getContentAsString();
+        JsonNode created = objectMapper.readTree(createResponse);
+        Long first = created.get(0).get("id").asLong();
+        Long second = created.get(1).get("id").asLong();
+
+        TaskBatchPatchRequest patch = new TaskBatchPatchRequest(List.of(
+                new TaskPatchItem(first, null, null, Task.TaskStatus.DONE),
+                new TaskPatchItem(second, "Two updated", null, null)));
+        mockMvc.perform(patch("/tasks/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("Authorization", "Bearer " + token)
+                .content(objectMapper.writeValueAsString(patch)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].status").value("DONE"))
+            .andExpect(jsonPath("$[1].title").value("Two updated"))
+            .andExpect(jsonPath("$[1].description").value("Second"));
+
+        mockMvc.perform(delete("/tasks/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("Authorization", "Bearer " + token)
+                .content(objectMapper.writeValueAsString(new TaskBatchDeleteRequest(List.of(second + 1000)))))
+            .andExpect(status().isNotFound());
+
+        mockMvc.perform(delete("/tasks/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("Authorization", "Bearer " + token)
+                .content(objectMapper.writeValueAsString(new TaskBatchDeleteRequest(List.of(first, second)))))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.deleted").value(2));
+
+        mockMvc.perform(get("/tasks")
+                .header("Authorization", "Bearer " + token))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    @DisplayName("Delta sync returns only tasks written or deleted after the given version")
+    void deltaSync() throws Exception {
+        String token = obtainToken();
+        Long first = createTask(token, "One", Task.TaskStatus.OPEN);
+        Long second = createTask(token, "Two", Task.TaskStatus.OPEN);
+
+        JsonNode initial = objectMapper.readTree(mockMvc.perform(get("/tasks/changes?since=0")
+                .header("Authorization", "Bearer " + token))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.tasks.length()").value(2))
+            .andExpect(jsonPath("$.deleted.length()").value(0))
+            .andReturn().getResponse().getContentAsString());
+        long version = initial.get("version").asLong();
+
+        mockMvc.perform(patch("/tasks/" + first)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("Authorization", "Bearer " + token)
+                .content("{\"status\":\"DONE\"}"))
+            .andExpect(status().isOk());
+        mockMvc.perform(delete("/tasks/" + second).header("Authorization", "Bearer " + token))
+            .andExpect(status().isOk());
+
+        JsonNode delta = objectMapper.readTree(mockMvc.perform(get("/tasks/changes?since=" + version)
+                .header("Authorization", "Bearer " + token))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.tasks.length()").value(1))
+            .andExpect(jsonPath("$.tasks[0].id").value(first))
+            .andExpect(jsonPath("$.tasks[0].status").value("DONE"))
+            .andExpect(jsonPath("$.deleted[0]").value(second))
+            .andExpect(jsonPath("$.reset").value(false))
+            .andReturn().getResponse().getContentAsString());
+        assertThat(delta.get("version").asLong()).isEqualTo(version + 2);
+
+        mockMvc.perform(get("/tasks/changes?since=" + (version + 2))
+                .header("Authorization", "Bearer " + token))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.tasks.length()").value(0))
+            .andExpect(jsonPath("$.deleted.length()").value(0));
+    }
+
+    @Test
+    @DisplayName("Delta sync resets clients ahead of the server or behind the purged tombstones")
+    void deltaSyncReset() throws Exception {
+        String token = obtainToken();
+        Long first = createTask(token, "One", Task.TaskStatus.OPEN);
+        Long second = createTask(token, "Two", Task.TaskStatus.OPEN);
+        mockMvc.perform(delete("/tasks/" + second).header("Authorization", "Bearer " + token))
+            .andExpect(status().isOk());
+
+        mockMvc.perform(get("/tasks/changes?since=1000")
+                .header("Authorization", "Bearer " + token))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.reset").value(true))
+            .andExpect(jsonPath("$.version").value(3))
+            .andExpect(jsonPath("$.tasks.length()").value(1))
+            .andExpect(jsonPath("$.tasks[0].id").value(first))
+            .andExpect(jsonPath("$.deleted.length()").value(0));
+
+        taskStore.purgeTombstonesDeletedBefore(Instant.now().plusSeconds(1));
+
+        mockMvc.perform(get("/tasks/changes?since=1")
+                .header("Authorization", "Bearer " + token))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.reset").value(true))
+            .andExpect(jsonPath("$.tasks.length()").value(1))
+            .andExpect(jsonPath("$.deleted.length()").value(0));
+        mockMvc.perform(get("/tasks/changes?since=3")
+                .header("Authorization", "Bearer " + token))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.reset").value(false))
+            .andExpect(jsonPath("$.tasks.length()").value(0));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("Committed task changes are pushed to the owner's SSE stream")
+    void streamTaskChanges() throws Exception {
+        // Events are pushed after commit, so this test commits and cleans up after itself
+        registerRequest.setEmail("stream@example.com");
+        loginRequest.setEmail("stream@example.com");
+        try {
+            String token = obtainToken();
+            MvcResult stream = mockMvc.perform(get("/tasks/stream").header("Authorization", "Bearer " + token))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+            Long id = createTask(token, "Streamed", Task.TaskStatus.OPEN);
+
+            String expected = "\"ids\":[" + id + "]";
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!stream.getResponse().getContentAsString().contains(expected) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertThat(stream.getResponse().getContentAsString())
+                .contains("event:created")
+                .contains("\"type\":\"created\"")
+                .contains(expected);
+        } finally {
+            userRepository.findByEmail("stream@example.com").ifPresent(userRepository::delete);
+        }
+    }
+
+    @Test
+    @DisplayName("NDJSON and CSV imports write valid records and report rejected ones by line")
+    void importTasks() throws Exception {
+        String token = obtainToken();
+        String ndjson = """
+            {"title":"First","description":"One"}
+            {"title":"   "}
+
+            {"title":"Second","status":"DONE"}
+            {"title":"Third","status":"LATER"}
+            {"title":
+            """;
+
+        mockMvc.perform(post("/tasks/import")
+                .header("Authorization", "Bearer " + token)
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(ndjson))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.imported").value(2))
+            .andExpect(jsonPath("$.failed").value(3))
+            .andExpect(jsonPath("$.errors[0].line").value(2))
+            .andExpect(jsonPath("$.errors[0].message").value("Title is required"))
+            .andExpect(jsonPath("$.errors[1].line").value(5))
+            .andExpect(jsonPath("$.errors[1].message").value("Invalid status: LATER"))
+            .andExpect(jsonPath("$.errors[2].line").value(6));
+
+        String csv = """
+            title,status,description
+            Fourth,in_progress,"Quoted, with a comma"
+            "Fifth",,"Spans
+            two lines with a ""quote""\"
+            ,OPEN,No title
+            Sixth,,
+            """;
+
+        mockMvc.perform(post("/tasks/import")
+                .header("Authorization", "Bearer " + token)
+                .contentType("text/csv")
+                .content(csv))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.imported").value(3))
+            .andExpect(jsonPath("$.failed").value(1))
+            .andExpect(jsonPath("$.errors[0].line").value(5));
+
+        mockMvc.perform(get("/tasks").header("Authorization", "Bearer " + token))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(5))
+            .andExpect(jsonPath("$[0].description").value("One"))
+            .andExpect(jsonPath("$[0].status").value("OPEN"))
+            .andExpect(jsonPath("$[1].status").value("DONE"))
+            .andExpect(jsonPath("$[2].status").value("IN_PROGRESS"))
+            .andExpect(jsonPath("$[2].description").value("Quoted, with a comma"))
+            .andExpect(jsonPath("$[3].description").value("Spans\ntwo lines with a \"quote\""))
+            .andExpect(jsonPath("$[4].title").value("Sixth"));
+
+        mockMvc.perform(post("/tasks/import")
+                .header("Authorization", "Bearer " + token)
+                .contentType("text/csv")
+                .content("name,title\nx,y\n"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("Tasks are exported as NDJSON, gzipped when the client accepts it")
+    void exportTasks() throws Exception {
+        // The export is read on an async thread, so this test commits and cleans up after itself
+        registerRequest.setEmail("export@example.com");
+        loginRequest.setEmail("export@example.com");
+        try {
+            String token = obtainToken();
+            Long first = createTask(token, "First", Task.TaskStatus.OPEN);
+            Long second = createTask(token, "Second", Task.TaskStatus.DONE);
+
+            MvcResult plain = mockMvc.perform(get("/tasks/export").header("Authorization", "Bearer " + token))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+            // Headers and body are only read once the streaming body has completed
+            plain.getAsyncResult();
+            String ndjson = mockMvc.perform(asyncDispatch(plain))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", MediaType.APPLICATION_NDJSON_VALUE))
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"tasks.ndjson\""))
+                .andReturn().getResponse().getContentAsString();
+
+            String[] lines = ndjson.split("\n");
+            assertThat(ndjson).endsWith("\n");
+            assertThat(lines).hasSize(2);
+            assertThat(objectMapper.readTree(lines[0]).get("id").asLong()).isEqualTo(first);
+            assertThat(objectMapper.readTree(lines[1]).get("id").asLong()).isEqualTo(second);
+            assertThat(objectMapper.readTree(lines[1]).get("status").asText()).isEqualTo("DONE");
+
+            MvcResult compressed = mockMvc.perform(get("/tasks/export")
+                    .header("Authorization", "Bearer " + token)
+                    .header("Accept-Encoding", "gzip"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+            compressed.getAsyncResult();
+            byte[] body = mockMvc.perform(asyncDispatch(compressed))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andReturn().getResponse().getContentAsByteArray();
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(ndjson);
+            }
+        } finally {
+            userRepository.findByEmail("export@example.com").ifPresent(userRepository::delete);
+        }
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @DisplayName("Unchanged task lists are answered with 304 until a write commits")
+    void conditionalGet() throws Exception {
+        // The sharded engine runs on several instances and serves lists without ETags
+        assumeFalse(taskStore instanceof ShardedTaskStore);
+        // Versions are bumped after commit, so this test commits and cleans up after itself
+        registerRequest.setEmail("etag@example.com");
+        loginRequest.setEmail("etag@example.com");
+        try {
+            String token = obtainToken();
+            Long id = createTask(token, "One", Task.TaskStatus.OPEN);
+
+            String etag = mockMvc.perform(get("/tasks").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andExpect(header().string("Cache-Control", "no-cache, private"))
+                .andExpect(header().string("Vary", "Authorization"))
+                .andReturn().getResponse().getHeader("ETag");
+
+            mockMvc.perform(get("/tasks")
+                    .header("Authorization", "Bearer " + token)
+                    .header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(header().string("Vary", "Authorization"));
+
+            // Another account never matches the tag, even with the same number of writes
+            registerRequest.setEmail("etag-other@example.com");
+            loginRequest.setEmail("etag-other@example.com");
+            String otherToken = obtainToken();
+            createTask(otherToken, "Other", Task.TaskStatus.OPEN);
+            mockMvc.perform(get("/tasks")
+                    .header("Authorization", "Bearer " + otherToken)
+                    .header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].title").value("Other"));
+
+            // Paged views carry their own tag
+            mockMvc.perform(get("/tasks?limit=1")
+                    .header("Authorization", "Bearer " + token)
+                    .header("If-None-Match", etag))
+                .andExpect(status().isOk());
+
+            mockMvc.perform(delete("/tasks/" + id).header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+            mockMvc.perform(get("/tasks")
+                    .header("Authorization", "Bearer " + token)
+                    .header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+        } finally {
+            userRepository.findByEmail("etag@example.com").ifPresent(userRepository::delete);
+            userRepository.findByEmail("etag-other@example.com").ifPresent(userRepository::delete);
+        }
+    }
+
     @Test
     @DisplayName("Access without token is unauthorized")
     void accessWithoutToken() throws Exception {